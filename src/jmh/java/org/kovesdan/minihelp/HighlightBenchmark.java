@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.JScrollPane;
+import javax.swing.JTextPane;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures highlighting the matches of a common word in a long page: all the
+ * matches at once as before, the matches around the viewport, and scrolling
+ * with the viewport highlighting. Runs headless.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HighlightBenchmark {
+	@Param({ "20000" })
+	int words;
+
+	private JTextPane pane = new JTextPane();
+	private JScrollPane scrollPane = new JScrollPane(pane);
+	private ViewportHighlighter viewportHighlighter;
+	private Pattern[] patterns;
+	private int next;
+	private int scrollHeight;
+
+	@Setup
+	public void setUp() {
+		SyntheticHelpset hs = new SyntheticHelpset(1, 1, 0);
+		hs.setWordsPerPage(words);
+		hs.setVocabularySize(50);
+		pane.setContentType("text/html");
+		pane.setEditable(false);
+		pane.setText(hs.getPage(0));
+		scrollPane.setSize(800, 600);
+		scrollPane.doLayout();
+		scrollPane.getViewport().doLayout();
+		viewportHighlighter = new ViewportHighlighter(pane, scrollPane.getViewport());
+		String[] vocabulary = hs.getVocabulary();
+		patterns = new Pattern[] { Pattern.compile("\\b" + vocabulary[0] + "\\b"),
+				Pattern.compile("\\b" + vocabulary[1] + "\\b") };
+		scrollHeight = Math.max(1, pane.getPreferredSize().height - 600);
+	}
+
+	@Benchmark
+	public int highlightAll() throws BadLocationException {
+		Highlighter highlighter = pane.getHighlighter();
+		highlighter.removeAllHighlights();
+		Document doc = pane.getDocument();
+		Matcher matcher = patterns[next++ & 1].matcher(doc.getText(0, doc.getLength()));
+		Highlighter.HighlightPainter painter = new MiniHelpHighlightPainter(Color.YELLOW);
+		while (matcher.find())
+			highlighter.addHighlight(matcher.start(), matcher.end(), painter);
+		return highlighter.getHighlights().length;
+	}
+
+	/*
+	 * The two patterns alternate, so the matches are computed every time.
+	 */
+	@Benchmark
+	public int highlightViewport() {
+		viewportHighlighter.setPattern(patterns[next++ & 1]);
+		return viewportHighlighter.getInstalledCount();
+	}
+
+	@Benchmark
+	public int highlightViewportCached() {
+		viewportHighlighter.setPattern(patterns[0]);
+		return viewportHighlighter.getInstalledCount();
+	}
+
+	@Benchmark
+	public int scroll() {
+		if (next == 0)
+			viewportHighlighter.setPattern(patterns[0]);
+		next = (next + 7919) % scrollHeight;
+		scrollPane.getViewport().setViewPosition(new Point(0, next));
+		return viewportHighlighter.getInstalledCount();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.IndexItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures merging the indexes of several helpsets, flattening the merged
+ * index for display and filtering it by prefix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexBenchmark {
+	@Param({ "1", "20" })
+	int helpsets;
+
+	@Param({ "5000" })
+	int indexTerms;
+
+	private List<SyntheticHelpset> sources;
+	private List<List<IndexItem>> unmerged;
+	private List<IndexItem> merged;
+	private IndexListModel model = new IndexListModel();
+	private String prefix;
+
+	@Setup
+	public void setUp() throws JAXBException {
+		sources = SyntheticHelpset.createHelpsets(helpsets, 100, 2, indexTerms);
+		merged = merge(parse());
+		model.setIndex(merged);
+		prefix = model.getElementAt(model.getSize() / 2).getText().substring(0, 3);
+	}
+
+	/*
+	 * Merging modifies the items, so every merge gets freshly parsed ones.
+	 */
+	@Setup(Level.Invocation)
+	public void parseIndexes() throws JAXBException {
+		unmerged = parse();
+	}
+
+	private List<List<IndexItem>> parse() throws JAXBException {
+		List<List<IndexItem>> indexes = new ArrayList<>();
+		for (SyntheticHelpset hs : sources)
+			indexes.add(hs.getConfiguration().getIndexItems());
+		return indexes;
+	}
+
+	private static List<IndexItem> merge(List<List<IndexItem>> indexes) {
+		List<IndexItem> items = new ArrayList<>();
+		IndexMerger merger = new IndexMerger(items);
+		for (List<IndexItem> index : indexes)
+			for (IndexItem i : index)
+				merger.merge(i);
+		return items;
+	}
+
+	@Benchmark
+	public List<IndexItem> merge() {
+		return merge(unmerged);
+	}
+
+	@Benchmark
+	public IndexListModel flatten() {
+		IndexListModel m = new IndexListModel();
+		m.setIndex(merged);
+		return m;
+	}
+
+	@Benchmark
+	public int filter() {
+		model.filter(prefix);
+		int size = model.getSize();
+		model.filter("");
+		return size;
+	}
+}
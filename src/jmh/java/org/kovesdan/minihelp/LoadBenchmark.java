@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.ConfigurationReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing the configuration and loading a helpset from a directory
+ * and from an archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+	@Param({ "1000", "10000" })
+	int pages;
+
+	@Param({ "3" })
+	int tocDepth;
+
+	@Param({ "5000" })
+	int indexTerms;
+
+	private byte[] xml;
+	private File dir;
+	private File config;
+	private File archive;
+
+	@Setup
+	public void setUp() throws IOException, JAXBException {
+		SyntheticHelpset hs = new SyntheticHelpset(pages, tocDepth, indexTerms);
+		// the pages of a directory are looked up unless they are mapped
+		hs.setMapTargets(false);
+		xml = hs.getConfigurationXml().getBytes(StandardCharsets.UTF_8);
+		dir = Files.createTempDirectory("minihelp-bench").toFile();
+		config = hs.write(dir);
+		archive = new File(dir.getParentFile(), dir.getName() + ".zip");
+		HelpsetArchiver.archive(config, archive);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+		archive.delete();
+	}
+
+	@Benchmark
+	public Configuration parseConfiguration() throws JAXBException {
+		return ConfigurationReader.parseConfiguration(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public Helpset loadDirectory() throws IOException {
+		Helpset hs = new Helpset(config.toURI().toURL(), dir.toURI());
+		hs.load();
+		return hs;
+	}
+
+	@Benchmark
+	public Helpset loadArchive() {
+		Helpset hs = new Helpset(archive);
+		hs.load();
+		return hs;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the searches: literal, fuzzy and regular expression searches in
+ * the documents, and searches in the titles of the table of contents and the
+ * index. The full-text index is either kept in memory or mapped from an index
+ * file. The search engine is measured with one caller and with callers
+ * that share it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+	@Param({ "1000", "10000" })
+	int pages;
+
+	@Param({ "memory", "mapped" })
+	String segment;
+
+	private HelpsetContents contents = new HelpsetContents();
+	private FullTextIndex fullTextIndex = contents.fullTextIndex;
+	private SearchEngine engine;
+	private TitleIndex titleIndex;
+	private List<String> targets = new ArrayList<>();
+	private File indexFile;
+	private String word;
+	private String phrase;
+	private String typo;
+	private Pattern regex;
+
+	@Setup
+	public void setUp() throws IOException, JAXBException {
+		SyntheticHelpset hs = new SyntheticHelpset(pages, 3, 5000);
+		MemoryIndexSegment memory = hs.createIndexSegment();
+		if (segment.equals("mapped")) {
+			indexFile = File.createTempFile("minihelp-bench", ".idx");
+			MappedIndexSegment.write(memory, indexFile);
+			fullTextIndex.addSegment(MappedIndexSegment.open(indexFile));
+		} else {
+			fullTextIndex.addSegment(memory);
+		}
+		for (int i = 0; i < pages; i++) {
+			targets.add(hs.getTarget(i));
+			contents.mappedContent.put(hs.getTarget(i), new File(hs.getTarget(i) + ".html").toURI().toURL());
+		}
+
+		Configuration configuration = hs.getConfiguration();
+		titleIndex = new TitleIndex(configuration.getIndexItems(), configuration.getTOCItems(), 1.0, 1.0);
+		contents.tableOfContents.addAll(configuration.getTOCItems());
+		contents.indexes.addAll(configuration.getIndexItems());
+		engine = new SearchEngine(contents);
+
+		String[] text = hs.getText(pages / 2).split(" ");
+		word = text[0];
+		phrase = text[0] + " " + text[1];
+		typo = word.substring(1);
+		regex = Pattern.compile(Pattern.quote(word.substring(0, 3)) + "\\w*" + Pattern.quote(word.substring(3)));
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (indexFile != null)
+			indexFile.delete();
+	}
+
+	@Benchmark
+	public Map<String, Double> literal() {
+		return fullTextIndex.search(word);
+	}
+
+	@Benchmark
+	public Map<String, Double> phrase() {
+		return fullTextIndex.search(phrase);
+	}
+
+	@Benchmark
+	public Map<String, Double> fuzzy() {
+		List<Map<String, Integer>> expansions = new ArrayList<>();
+		expansions.add(fullTextIndex.expand(typo));
+		return fullTextIndex.search(expansions);
+	}
+
+	/*
+	 * Regular expressions cannot be answered from the index, so the text of
+	 * every document is scanned.
+	 */
+	@Benchmark
+	public int regexScan() {
+		int matches = 0;
+		for (String target : targets)
+			if (regex.matcher(fullTextIndex.getText(target)).find())
+				matches++;
+		return matches;
+	}
+
+	@Benchmark
+	public Map<LinkInfo, Double> titles() {
+		return titleIndex.search(word, Pattern.compile(Pattern.quote(word), Pattern.CASE_INSENSITIVE));
+	}
+
+	/*
+	 * A full-text search through the engine, which also ranks the results
+	 * and looks up their labels.
+	 */
+	@Benchmark
+	public SearchResults engine() {
+		return engine.search(new SearchQuery(word).withFullText(true));
+	}
+
+	@Benchmark
+	@Threads(8)
+	public SearchResults engineShared() {
+		return engine.search(new SearchQuery(word).withFullText(true));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import org.kovesdan.minihelp.xml.TOCItem;
+
+/**
+ * Tree model that presents the table of contents directly, using the
+ * TOCItem objects as nodes under a root of its own. No nodes are built; the
+ * tree only asks for the children of the nodes that it shows.
+ */
+class ContentsTreeModel implements TreeModel {
+	private final Object root;
+	private final List<TOCItem> tableOfContents;
+	private final EventListenerList listeners = new EventListenerList();
+	private int rootCount;
+
+	public ContentsTreeModel(Object root, List<TOCItem> tableOfContents) {
+		this.root = root;
+		this.tableOfContents = tableOfContents;
+		this.rootCount = tableOfContents.size();
+	}
+
+	private List<TOCItem> getChildren(Object parent) {
+		if (parent == root)
+			return tableOfContents.subList(0, rootCount);
+		if (parent instanceof TOCItem)
+			return ((TOCItem) parent).getTOCItems();
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Object getRoot() {
+		return root;
+	}
+
+	@Override
+	public Object getChild(Object parent, int index) {
+		return getChildren(parent).get(index);
+	}
+
+	@Override
+	public int getChildCount(Object parent) {
+		return getChildren(parent).size();
+	}
+
+	@Override
+	public boolean isLeaf(Object node) {
+		return getChildCount(node) == 0;
+	}
+
+	@Override
+	public int getIndexOfChild(Object parent, Object child) {
+		if (parent == null || child == null)
+			return -1;
+		List<TOCItem> children = getChildren(parent);
+		for (int i = 0; i < children.size(); i++)
+			if (children.get(i) == child)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Notifies the tree about the helpsets that have been appended to the
+	 * table of contents since the last call.
+	 */
+	public void helpsetsAdded() {
+		int from = rootCount;
+		rootCount = tableOfContents.size();
+		if (rootCount == from)
+			return;
+		int[] indices = new int[rootCount - from];
+		Object[] children = new Object[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = from + i;
+			children[i] = tableOfContents.get(from + i);
+		}
+		TreeModelEvent event = new TreeModelEvent(this, new TreePath(root), indices, children);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class))
+			l.treeNodesInserted(event);
+	}
+
+	@Override
+	public void valueForPathChanged(TreePath path, Object newValue) {
+		// the table of contents is not editable
+	}
+
+	@Override
+	public void addTreeModelListener(TreeModelListener l) {
+		listeners.add(TreeModelListener.class, l);
+	}
+
+	@Override
+	public void removeTreeModelListener(TreeModelListener l) {
+		listeners.remove(TreeModelListener.class, l);
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.BufferedInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+
+/**
+ * Least recently used cache of parsed HTML documents, keyed by URL without
+ * the reference. The cache is bounded both by the number of documents and by
+ * their estimated size in memory.
+ */
+class DocumentCache {
+	private static final int BYTES_PER_CHAR = 2;
+	private static final int BYTES_PER_ELEMENT = 160;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final LinkedHashMap<String, CachedDocument> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private static class CachedDocument {
+		final Document document;
+		final long size;
+
+		CachedDocument(Document document, long size) {
+			this.document = document;
+			this.size = size;
+		}
+	}
+
+	public DocumentCache(int maxEntries, long maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	static String key(URL url) {
+		String s = url.toExternalForm();
+		int ref = s.indexOf('#');
+		return (ref >= 0) ? s.substring(0, ref) : s;
+	}
+
+	/**
+	 * Returns the cached document of a URL or null if it is not cached.
+	 */
+	public synchronized Document get(URL url) {
+		CachedDocument cached = entries.get(key(url));
+		if (cached == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return cached.document;
+	}
+
+	/**
+	 * Returns whether the document of a URL is cached, without counting it as
+	 * a hit or a miss.
+	 */
+	public synchronized boolean contains(URL url) {
+		return entries.containsKey(key(url));
+	}
+
+	/**
+	 * Reads and parses the document of a URL and adds it to the cache. If
+	 * the thread is interrupted, reading stops with an
+	 * {@link InterruptedIOException}.
+	 */
+	public Document load(URL url, HTMLEditorKit kit) throws IOException {
+		String key = key(url);
+		Document document = read(new URL(key), kit);
+		put(key, document);
+		return document;
+	}
+
+	private synchronized void put(String key, Document document) {
+		CachedDocument cached = new CachedDocument(document, estimateSize(document));
+		CachedDocument old = entries.put(key, cached);
+		if (old != null)
+			bytes -= old.size;
+		bytes += cached.size;
+
+		// the document just added is kept even if it exceeds the limits alone
+		Iterator<CachedDocument> it = entries.values().iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes) && entries.size() > 1) {
+			CachedDocument eldest = it.next();
+			it.remove();
+			bytes -= eldest.size;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Reads and parses a document the same way as
+	 * {@link javax.swing.JEditorPane#setPage(URL)}, but synchronously and
+	 * without displaying it.
+	 */
+	static Document read(URL url, HTMLEditorKit kit) throws IOException {
+		HTMLDocument document = (HTMLDocument) kit.createDefaultDocument();
+		document.setBase(url);
+		document.putProperty(Document.StreamDescriptionProperty, url);
+		// the charset is detected before parsing
+		document.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+
+		HelpsetArchive archive = HelpsetArchive.find(url);
+		if (archive != null)
+			document.putProperty("imageCache", archive.createImageCache());
+
+		URLConnection connection = HelpsetArchive.openConnection(url);
+		try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+			Charset charset = HtmlTextScanner.detectCharset(connection.getContentType(), in);
+			InterruptibleReader reader = new InterruptibleReader(new InputStreamReader(in, charset));
+			kit.read(reader, document, 0);
+			// the parser ends the document quietly on most errors
+			if (reader.interrupted || Thread.currentThread().isInterrupted())
+				throw new InterruptedIOException();
+		} catch (BadLocationException e) {
+			throw new IOException(e);
+		}
+		return document;
+	}
+
+	private static class InterruptibleReader extends FilterReader {
+		boolean interrupted;
+
+		InterruptibleReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkInterrupted();
+			return super.read();
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			checkInterrupted();
+			return super.read(cbuf, off, len);
+		}
+
+		private void checkInterrupted() throws InterruptedIOException {
+			if (interrupted || Thread.currentThread().isInterrupted()) {
+				interrupted = true;
+				throw new InterruptedIOException();
+			}
+		}
+	}
+
+	/*
+	 * The size of a document is estimated from its text and the number of
+	 * its elements.
+	 */
+	static long estimateSize(Document document) {
+		return (long) document.getLength() * BYTES_PER_CHAR + countElements(document.getDefaultRootElement())
+				* BYTES_PER_ELEMENT;
+	}
+
+	private static long countElements(Element element) {
+		long count = 1;
+		for (int i = 0; i < element.getElementCount(); i++)
+			count += countElements(element.getElement(i));
+		return count;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getEstimatedBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d documents, %d bytes, %d hits, %d misses, %d evictions", entries.size(), bytes, hits,
+				misses, evictions);
+	}
+}
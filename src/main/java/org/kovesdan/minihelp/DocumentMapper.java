@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.DocumentMapping;
+import org.kovesdan.minihelp.xml.TOCItem;
+
+/**
+ * Resolves the targets of a helpset to the URLs of the documents.
+ */
+class DocumentMapper {
+
+	/**
+	 * The resolved targets of a helpset. The explicitly mapped targets
+	 * override earlier mappings of the same target, while the default ones
+	 * are only used for targets that are not mapped yet.
+	 */
+	static class Mapping {
+		final Map<String, URL> explicit = new HashMap<>();
+		final Map<String, URL> defaults = new HashMap<>();
+
+		void mergeInto(Map<String, URL> mappedContent) {
+			mappedContent.putAll(explicit);
+			for (Map.Entry<String, URL> e : defaults.entrySet())
+				mappedContent.putIfAbsent(e.getKey(), e.getValue());
+		}
+	}
+
+	public static void map(Configuration configuration, URI baseUri, Map<String, URL> mappedContent) {
+		resolve(configuration, baseUri).mergeInto(mappedContent);
+	}
+
+	/**
+	 * Resolves the targets of a helpset without looking at other helpsets, so
+	 * that helpsets can be resolved in parallel. The default mappings of a
+	 * helpset archive with a target table are taken from the table, so the
+	 * documents are not looked up one by one.
+	 */
+	public static Mapping resolve(Configuration configuration, URI baseUri) {
+		Mapping mapping = new Mapping();
+
+		// store document mapping
+		for (DocumentMapping m : configuration.getDocumentMappings()) {
+			try {
+				URL url = resolve(baseUri, m.getUrl());
+				mapping.explicit.put(m.getTarget(), url);
+			} catch (MalformedURLException e1) {
+				// TODO: warning; not mapping malformed URLs
+			}
+		}
+
+		HelpsetArchive archive = HelpsetArchive.find(baseUri);
+		if (archive != null && archive.getTargets() != null) {
+			for (Map.Entry<String, String> e : archive.getTargets().entrySet()) {
+				if (!mapping.explicit.containsKey(e.getKey())) {
+					try {
+						mapping.defaults.put(e.getKey(), resolve(baseUri, e.getValue()));
+					} catch (MalformedURLException e1) {
+						// TODO: warning; not mapping malformed URLs
+					}
+				}
+			}
+			return mapping;
+		}
+
+		// default mapping for documents that are not explicitly mapped
+		for (TOCItem i : configuration.getTOCItems()) {
+			mapTOCItem(i, baseUri, mapping);
+		}
+		map(configuration.getHomeID(), baseUri, mapping);
+		return mapping;
+	}
+
+	/*
+	 * Resolves a relative reference. The base URI of a helpset archive is an
+	 * opaque jar URI, which URI.resolve() does not resolve against.
+	 */
+	static URL resolve(URI baseUri, String spec) throws MalformedURLException {
+		try {
+			if (baseUri.isOpaque())
+				return new URL(baseUri.toURL(), spec);
+			return baseUri.resolve(spec).toURL();
+		} catch (IllegalArgumentException e) {
+			throw new MalformedURLException(e.getMessage());
+		}
+	}
+
+	private static void map(String target, URI baseUri, Mapping mapping) {
+		if (!mapping.explicit.containsKey(target) && !mapping.defaults.containsKey(target)) {
+			try {
+				URL url = resolve(baseUri, target + ".html");
+				if (exists(url))
+					mapping.defaults.put(target, url);
+			} catch (MalformedURLException e1) {
+				// TODO: warning; not mapping malformed URLs
+			}
+		}
+	}
+
+	private static boolean exists(URL url) {
+		HelpsetArchive archive = HelpsetArchive.find(url);
+		if (archive != null)
+			return archive.contains(url);
+		return new File(url.getFile()).isFile();
+	}
+
+	private static void mapTOCItem(TOCItem i, URI baseUri, Mapping mapping) {
+		map(i.getTarget(), baseUri, mapping);
+		for (TOCItem i2 : i.getTOCItems())
+			mapTOCItem(i2, baseUri, mapping);
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.kovesdan.minihelp.HtmlTextScanner.TextHandler;
+
+/**
+ * Inverted index over the text of the mapped documents. Each document is
+ * tokenized once and every term is mapped to the list of documents it occurs
+ * in, together with its token positions, so that literal queries can be
+ * answered without re-reading the documents. The index consists of the
+ * prebuilt segments shipped with the helpsets and a segment for the
+ * documents indexed at runtime.
+ */
+class FullTextIndex {
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+	private static final Pattern INDEXABLE_QUERY = Pattern.compile("[\\p{L}\\p{N}]+( [\\p{L}\\p{N}]+)*");
+
+	static class DocumentText {
+		final List<String> tokens = new ArrayList<>();
+		final StringBuilder text = new StringBuilder();
+	}
+
+	private List<IndexSegment> segments = new ArrayList<>();
+	private MemoryIndexSegment runtimeSegment = new MemoryIndexSegment();
+	// searches share the index, adding documents and segments is exclusive
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Lock readLock = lock.readLock();
+	private final Lock writeLock = lock.writeLock();
+	// documents are never removed, so these targets stay indexed
+	private volatile Collection<String> indexedTargets;
+
+	public FullTextIndex() {
+		segments.add(runtimeSegment);
+	}
+
+	/**
+	 * Returns whether a query can be answered from the index. Regular
+	 * expressions and whole-word queries are compiled into patterns that the
+	 * index does not know about and literal queries may only consist of words
+	 * separated by single spaces.
+	 */
+	public static boolean canAnswer(String keyword, boolean regex, boolean wholeWords) {
+		return !regex && !wholeWords && keyword != null && INDEXABLE_QUERY.matcher(keyword).matches();
+	}
+
+	public void addSegment(IndexSegment segment) {
+		writeLock.lock();
+		try {
+			segments.add(0, segment);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	public boolean isIndexed(String target) {
+		readLock.lock();
+		try {
+			return contains(target);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private boolean contains(String target) {
+		for (IndexSegment s : segments)
+			if (s.contains(target))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns whether all the given documents are indexed. When they are,
+	 * the collection is remembered, so asking again about the same collection
+	 * does not look up each document.
+	 */
+	public boolean isIndexed(Collection<String> targets) {
+		if (targets == indexedTargets)
+			return true;
+		readLock.lock();
+		try {
+			for (String target : targets)
+				if (!contains(target))
+					return false;
+		} finally {
+			readLock.unlock();
+		}
+		indexedTargets = targets;
+		return true;
+	}
+
+	public int size() {
+		readLock.lock();
+		try {
+			int size = 0;
+			for (IndexSegment s : segments)
+				size += s.getDocumentCount();
+			return size;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	IndexSegment getRuntimeSegment() {
+		return runtimeSegment;
+	}
+
+	public void addDocument(String target, URL url) throws IOException {
+		DocumentText document = read(url);
+		writeLock.lock();
+		try {
+			// another search may have indexed the document meanwhile
+			for (IndexSegment s : segments)
+				if (s.contains(target))
+					return;
+			runtimeSegment.addDocument(target, document.tokens, document.text);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the plain text of an indexed document or null if the document
+	 * is not indexed.
+	 */
+	public String getText(String target) {
+		readLock.lock();
+		try {
+			for (IndexSegment s : segments) {
+				int document = s.getDocument(target);
+				if (document >= 0)
+					return s.getText(document);
+			}
+			return null;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the targets of the documents that contain the given literal
+	 * query as a case-insensitive substring of their text, with their BM25
+	 * relevance scores. Like in a plain substring search, the first word of
+	 * the query may be the end of a longer word and the last word may be the
+	 * beginning of one. Punctuation between the words is not significant.
+	 */
+	public Map<String, Double> search(String keyword) {
+		readLock.lock();
+		try {
+			List<String> words = tokenize(keyword);
+			int documentCount = 0;
+			long totalLength = 0;
+			int[] documentFrequencies = new int[words.size()];
+			List<IndexSegment.Matches> matches = new ArrayList<>();
+			for (IndexSegment s : segments) {
+				IndexSegment.Matches m = s.match(words);
+				for (int i = 0; i < words.size(); i++)
+					documentFrequencies[i] += m.documentFrequencies[i];
+				documentCount += s.getDocumentCount();
+				totalLength += s.getTotalLength();
+				matches.add(m);
+			}
+
+			Map<String, Double> result = new HashMap<>();
+			double averageLength = (documentCount > 0) ? (double) totalLength / documentCount : 0;
+			for (int i = 0; i < segments.size(); i++) {
+				IndexSegment s = segments.get(i);
+				for (Map.Entry<Integer, int[]> e : matches.get(i).termFrequencies.entrySet()) {
+					double score = 0;
+					int[] termFrequencies = e.getValue();
+					for (int w = 0; w < words.size(); w++)
+						score += bm25(termFrequencies[w], documentFrequencies[w], documentCount,
+								s.getDocumentLength(e.getKey()), averageLength);
+					result.merge(s.getTarget(e.getKey()), score, Math::max);
+				}
+			}
+			return result;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the indexed terms within the allowed edit distance of a word,
+	 * with their distance.
+	 */
+	public Map<String, Integer> expand(String word) {
+		readLock.lock();
+		try {
+			LevenshteinAutomaton automaton = new LevenshteinAutomaton(word);
+			Map<String, Integer> result = new HashMap<>();
+			for (IndexSegment s : segments)
+				for (Map.Entry<String, Integer> e : s.expand(automaton).entrySet())
+					result.merge(e.getKey(), e.getValue(), Math::min);
+			return result;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the targets of the documents that contain a term of each of the
+	 * given expansions, with their BM25 relevance scores. The words of a
+	 * fuzzy query are not matched as a phrase; each word scores with its
+	 * best term in the document, weighted down by the edit distance of the
+	 * term.
+	 */
+	public Map<String, Double> search(List<Map<String, Integer>> expansions) {
+		readLock.lock();
+		try {
+			int documentCount = 0;
+			long totalLength = 0;
+			for (IndexSegment s : segments) {
+				documentCount += s.getDocumentCount();
+				totalLength += s.getTotalLength();
+			}
+			double averageLength = (documentCount > 0) ? (double) totalLength / documentCount : 0;
+
+			Map<String, Double> result = null;
+			for (Map<String, Integer> expansion : expansions) {
+				Map<String, Double> scores = new HashMap<>();
+				for (Map.Entry<String, Integer> e : expansion.entrySet()) {
+					List<List<IndexSegment.Posting>> postings = new ArrayList<>();
+					int documentFrequency = 0;
+					for (IndexSegment s : segments) {
+						List<IndexSegment.Posting> p = s.getPostings(e.getKey());
+						postings.add(p);
+						if (p != null)
+							documentFrequency += p.size();
+					}
+					for (int i = 0; i < segments.size(); i++) {
+						if (postings.get(i) == null)
+							continue;
+						IndexSegment s = segments.get(i);
+						for (IndexSegment.Posting p : postings.get(i)) {
+							double score = bm25(p.positions.length, documentFrequency, documentCount,
+									s.getDocumentLength(p.document), averageLength) / (1 + e.getValue());
+							scores.merge(s.getTarget(p.document), score, Math::max);
+						}
+					}
+				}
+				if (result == null) {
+					result = scores;
+				} else {
+					result.keySet().retainAll(scores.keySet());
+					for (Map.Entry<String, Double> e : result.entrySet())
+						e.setValue(e.getValue() + scores.get(e.getKey()));
+				}
+			}
+			return (result != null) ? result : new HashMap<>();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private static double bm25(int termFrequency, int documentFrequency, int documentCount, int documentLength,
+			double averageLength) {
+		double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+		double norm = (averageLength > 0) ? documentLength / averageLength : 1;
+		return idf * termFrequency * (K1 + 1) / (termFrequency + K1 * (1 - B + B * norm));
+	}
+
+	/**
+	 * Reads the visible text of a document and splits it into terms. The
+	 * blocks of the text are separated by line breaks.
+	 */
+	static DocumentText read(URL url) throws IOException {
+		DocumentText document = new DocumentText();
+		StringBuilder word = new StringBuilder();
+		HtmlTextScanner.get().scan(url, new TextHandler() {
+			@Override
+			public void text(char[] text, int start, int length) {
+				document.text.append(text, start, length);
+				for (int i = start; i < start + length; i++) {
+					if (Character.isLetterOrDigit(text[i]))
+						word.append(text[i]);
+					else
+						endOfWord();
+				}
+			}
+
+			@Override
+			public boolean endOfBlock() {
+				endOfWord();
+				int length = document.text.length();
+				if (length > 0 && document.text.charAt(length - 1) != '\n')
+					document.text.append('\n');
+				return true;
+			}
+
+			private void endOfWord() {
+				if (word.length() > 0) {
+					document.tokens.add(word.toString().toLowerCase(Locale.ROOT));
+					word.setLength(0);
+				}
+			}
+		});
+		return document;
+	}
+
+	static List<String> tokenize(CharSequence text) {
+		List<String> tokens = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (word && start < 0) {
+				start = i;
+			} else if (!word && start >= 0) {
+				tokens.add(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.ConfigurationReader;
+
+class Helpset {
+	Configuration configuration;
+	URI baseUri;
+	URL source;
+	File archiveFile;
+	DocumentMapper.Mapping mapping;
+	IndexSegment fullTextIndex;
+	long loadTime;
+
+	public Helpset(Configuration configuration, URI baseUri) {
+		super();
+		this.configuration = configuration;
+		this.baseUri = baseUri;
+	}
+
+	public Helpset(URL source, URI baseUri) {
+		this.source = source;
+		this.baseUri = baseUri;
+	}
+
+	public Helpset(File archiveFile) {
+		this.archiveFile = archiveFile;
+		this.baseUri = HelpsetArchive.baseUri(archiveFile);
+	}
+
+	/**
+	 * Parses the configuration if it has not been parsed yet, resolves the
+	 * targets and opens the prebuilt full-text index. Does not touch the
+	 * window, so helpsets can be loaded in parallel.
+	 * 
+	 * @return whether the helpset could be loaded.
+	 */
+	boolean load() {
+		long start = System.nanoTime();
+		HelpsetArchive archive = null;
+		try {
+			if (archiveFile != null) {
+				archive = HelpsetArchive.open(archiveFile);
+				if (configuration == null)
+					configuration = ConfigurationReader
+							.parseConfiguration(archive.getInputStream(HelpsetArchive.CONFIG_NAME));
+			} else if (configuration == null)
+				configuration = ConfigurationReader.parseConfiguration(source);
+		} catch (JAXBException | IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		mapping = DocumentMapper.resolve(configuration, baseUri);
+		fullTextIndex = (archive != null) ? openFullTextIndex(archive) : openFullTextIndex(baseUri);
+		loadTime = System.nanoTime() - start;
+		return true;
+	}
+
+	private static IndexSegment openFullTextIndex(URI baseUri) {
+		File file;
+		try {
+			file = new File(baseUri.resolve(MappedIndexSegment.FILE_NAME));
+		} catch (IllegalArgumentException e) {
+			// not a local helpset; documents are indexed on demand
+			return null;
+		}
+		if (file.isFile()) {
+			try {
+				return MappedIndexSegment.open(file);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	private static IndexSegment openFullTextIndex(HelpsetArchive archive) {
+		if (archive.contains(MappedIndexSegment.FILE_NAME)) {
+			try {
+				return MappedIndexSegment.open(archive.getBuffer(MappedIndexSegment.FILE_NAME));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A helpset packed into a single zip or jar file. The archive is memory-mapped
+ * and its central directory is read once, so the configuration, the pages,
+ * the images and the full-text index are served from the mapping without
+ * extracting them and without touching the file system for each entry.
+ * <p>
+ * The documents of an archive are addressed with the usual
+ * {@code jar:file:...!/entry} URLs, so relative links and the history work
+ * as for other helpsets, but reading them through
+ * {@link #openConnection(URL)} uses the mapping. The archive may contain a
+ * target table written by {@link HelpsetArchiver}, which maps the targets
+ * to their documents so that they do not have to be looked up when the
+ * helpset is loaded.
+ */
+class HelpsetArchive {
+	public static final String CONFIG_NAME = "minihelp-config.xml";
+	public static final String TARGETS_NAME = "minihelp-targets.txt";
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int CENTRAL_SIGNATURE = 0x02014b50;
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	private static final int END_SIZE = 22;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+
+	private static final Map<String, HelpsetArchive> OPEN = new ConcurrentHashMap<>();
+
+	private final File file;
+	private final URI baseUri;
+	private final ByteBuffer buffer;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private Map<String, String> targets;
+
+	private static class Entry {
+		int method;
+		int compressedSize;
+		int size;
+		int headerOffset;
+	}
+
+	private HelpsetArchive(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.baseUri = baseUri(file);
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		readCentralDirectory();
+		targets = readTargets();
+	}
+
+	/**
+	 * Opens an archive or returns it if it is already open.
+	 */
+	public static HelpsetArchive open(File file) throws IOException {
+		file = file.getAbsoluteFile();
+		HelpsetArchive archive = OPEN.get(file.toURI().toString());
+		if (archive != null)
+			return archive;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			archive = new HelpsetArchive(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		HelpsetArchive previous = OPEN.putIfAbsent(file.toURI().toString(), archive);
+		return (previous != null) ? previous : archive;
+	}
+
+	/**
+	 * Returns the URI that the entries of an archive are resolved against.
+	 */
+	public static URI baseUri(File file) {
+		return URI.create("jar:" + file.getAbsoluteFile().toURI() + "!/");
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public URI getBaseUri() {
+		return baseUri;
+	}
+
+	/**
+	 * Returns the open archive that contains the document of a URL or null if
+	 * it is not in an open archive.
+	 */
+	public static HelpsetArchive find(URL url) {
+		if (!"jar".equals(url.getProtocol()))
+			return null;
+		String file = url.getFile();
+		int separator = file.indexOf("!/");
+		return (separator < 0) ? null : OPEN.get(file.substring(0, separator));
+	}
+
+	public static HelpsetArchive find(URI uri) {
+		if (!"jar".equals(uri.getScheme()))
+			return null;
+		String spec = uri.toString().substring("jar:".length());
+		int separator = spec.indexOf("!/");
+		return (separator < 0) ? null : OPEN.get(URI.create(spec.substring(0, separator)).toString());
+	}
+
+	/**
+	 * Returns a connection to the document of a URL. Documents in open
+	 * archives are read from the mapping, others through the URL.
+	 */
+	public static URLConnection openConnection(URL url) throws IOException {
+		HelpsetArchive archive = find(url);
+		if (archive == null)
+			return url.openConnection();
+		String name = entryName(url);
+		if (!archive.entries.containsKey(name))
+			throw new IOException("No such entry in " + archive.file + ": " + name);
+		return archive.new EntryConnection(url, name);
+	}
+
+	/**
+	 * Returns whether the archive contains the document of a URL.
+	 */
+	public boolean contains(URL url) {
+		return find(url) == this && entries.containsKey(entryName(url));
+	}
+
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Returns the target table of the archive, which maps the targets to
+	 * the entries of their documents, or null if the archive has no target
+	 * table.
+	 */
+	public Map<String, String> getTargets() {
+		return targets;
+	}
+
+	public InputStream getInputStream(String name) throws IOException {
+		return new ByteArrayInputStream(read(name));
+	}
+
+	/**
+	 * Returns the contents of an entry. Stored entries are returned as a
+	 * slice of the mapping, deflated ones are inflated to the heap.
+	 */
+	public ByteBuffer getBuffer(String name) throws IOException {
+		Entry entry = getEntry(name);
+		if (entry.method == STORED)
+			return slice(dataOffset(entry), entry.size);
+		return ByteBuffer.wrap(read(name));
+	}
+
+	/**
+	 * Returns the contents of an entry.
+	 */
+	public byte[] read(String name) throws IOException {
+		Entry entry = getEntry(name);
+		ByteBuffer data = slice(dataOffset(entry), entry.compressedSize);
+		byte[] bytes = new byte[entry.size];
+		if (entry.method == STORED) {
+			data.get(bytes);
+			return bytes;
+		}
+		byte[] compressed = new byte[entry.compressedSize + 1];
+		data.get(compressed, 0, entry.compressedSize);
+		Inflater inflater = new Inflater(true);
+		try {
+			// the extra byte is needed by the inflater in nowrap mode
+			inflater.setInput(compressed);
+			int n = 0;
+			while (n < bytes.length && !inflater.finished()) {
+				int inflated = inflater.inflate(bytes, n, bytes.length - n);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				n += inflated;
+			}
+			if (n != bytes.length)
+				throw new ZipException("Truncated entry in " + file + ": " + name);
+		} catch (DataFormatException e) {
+			throw new ZipException("Corrupt entry in " + file + ": " + name);
+		} finally {
+			inflater.end();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns an image cache for the documents of this archive. The HTML
+	 * views look up their images in the cache of the document, so the
+	 * images are read from the mapping instead of the file.
+	 */
+	public Dictionary<URL, Image> createImageCache() {
+		return new ImageCache();
+	}
+
+	private class ImageCache extends Dictionary<URL, Image> {
+		private final Map<String, Image> images = new HashMap<>();
+
+		@Override
+		public synchronized Image get(Object key) {
+			if (!(key instanceof URL))
+				return null;
+			if (!contains((URL) key))
+				return Toolkit.getDefaultToolkit().createImage((URL) key);
+			String name = entryName((URL) key);
+			Image image = images.get(name);
+			if (image == null) {
+				try {
+					image = Toolkit.getDefaultToolkit().createImage(read(name));
+					images.put(name, image);
+				} catch (IOException e) {
+					// TODO: warning
+					return null;
+				}
+			}
+			return image;
+		}
+
+		@Override
+		public synchronized Image put(URL key, Image value) {
+			return images.put(entryName(key), value);
+		}
+
+		@Override
+		public synchronized Image remove(Object key) {
+			return (key instanceof URL) ? images.remove(entryName((URL) key)) : null;
+		}
+
+		@Override
+		public synchronized int size() {
+			return images.size();
+		}
+
+		@Override
+		public synchronized boolean isEmpty() {
+			return images.isEmpty();
+		}
+
+		@Override
+		public Enumeration<URL> keys() {
+			return Collections.emptyEnumeration();
+		}
+
+		@Override
+		public synchronized Enumeration<Image> elements() {
+			return Collections.enumeration(images.values());
+		}
+	}
+
+	private class EntryConnection extends URLConnection {
+		private final String name;
+
+		EntryConnection(URL url, String name) {
+			super(url);
+			this.name = name;
+		}
+
+		@Override
+		public void connect() {
+			connected = true;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			connect();
+			return HelpsetArchive.this.getInputStream(name);
+		}
+
+		@Override
+		public String getContentType() {
+			return guessContentTypeFromName(name);
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			return entries.get(name).size;
+		}
+
+		@Override
+		public long getLastModified() {
+			return file.lastModified();
+		}
+	}
+
+	static String entryName(URL url) {
+		String file = url.getFile();
+		String name = file.substring(file.indexOf("!/") + 2);
+		try {
+			return URLDecoder.decode(name.replace("+", "%2B"), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Entry getEntry(String name) throws IOException {
+		Entry entry = entries.get(name);
+		if (entry == null)
+			throw new IOException("No such entry in " + file + ": " + name);
+		return entry;
+	}
+
+	private void readCentralDirectory() throws IOException {
+		int end = -1;
+		for (int i = buffer.limit() - END_SIZE; i >= Math.max(0, buffer.limit() - END_SIZE - 0xffff); i--)
+			if (buffer.getInt(i) == END_SIGNATURE) {
+				end = i;
+				break;
+			}
+		if (end < 0)
+			throw new ZipException("Not a zip file: " + file);
+		int count = Short.toUnsignedInt(buffer.getShort(end + 10));
+		int position = buffer.getInt(end + 16);
+		for (int i = 0; i < count; i++) {
+			if (position < 0 || position + 46 > buffer.limit() || buffer.getInt(position) != CENTRAL_SIGNATURE)
+				throw new ZipException("Corrupt central directory in " + file);
+			Entry entry = new Entry();
+			entry.method = Short.toUnsignedInt(buffer.getShort(position + 10));
+			entry.compressedSize = buffer.getInt(position + 20);
+			entry.size = buffer.getInt(position + 24);
+			int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+			int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+			int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+			entry.headerOffset = buffer.getInt(position + 42);
+			byte[] name = new byte[nameLength];
+			slice(position + 46, nameLength).get(name);
+			if (entry.method != STORED && entry.method != DEFLATED || entry.size < 0 || entry.compressedSize < 0)
+				throw new ZipException("Unsupported entry in " + file + ": " + new String(name, StandardCharsets.UTF_8));
+			entries.put(new String(name, StandardCharsets.UTF_8), entry);
+			position += 46 + nameLength + extraLength + commentLength;
+		}
+	}
+
+	private int dataOffset(Entry entry) throws ZipException {
+		int offset = entry.headerOffset;
+		if (offset < 0 || offset + 30 > buffer.limit() || buffer.getInt(offset) != LOCAL_SIGNATURE)
+			throw new ZipException("Corrupt local header in " + file);
+		return offset + 30 + Short.toUnsignedInt(buffer.getShort(offset + 26))
+				+ Short.toUnsignedInt(buffer.getShort(offset + 28));
+	}
+
+	private ByteBuffer slice(int offset, int length) {
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(offset);
+		duplicate.limit(offset + length);
+		return duplicate.slice();
+	}
+
+	private Map<String, String> readTargets() throws IOException {
+		if (!entries.containsKey(TARGETS_NAME))
+			return null;
+		Map<String, String> targets = new LinkedHashMap<>();
+		for (String line : new String(read(TARGETS_NAME), StandardCharsets.UTF_8).split("\n")) {
+			int tab = line.indexOf('\t');
+			if (tab > 0)
+				targets.put(line.substring(0, tab), line.substring(tab + 1));
+		}
+		return targets;
+	}
+}
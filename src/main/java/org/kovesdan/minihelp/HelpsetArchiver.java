@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.ConfigurationReader;
+
+/**
+ * Command-line tool that packs a helpset into a single zip file. The first
+ * argument is the path to the configuration file and the second one is the
+ * path of the archive to write. Every file in the directory of the
+ * configuration file is packed, together with the configuration, the
+ * full-text index and the target table that maps the targets to their
+ * documents. The archive can be opened with
+ * {@link MiniHelpFactory#addHelpset(File)} or given to
+ * {@link MiniHelpViewer} instead of the configuration file.
+ * 
+ * @author Gábor Kövesdán
+ */
+public class HelpsetArchiver {
+
+	/**
+	 * Packs a helpset into an archive.
+	 * 
+	 * @param config
+	 *            the configuration file of the helpset.
+	 * @param output
+	 *            the archive to write.
+	 * @throws IOException
+	 *             when a document cannot be read or the archive cannot be
+	 *             written.
+	 * @throws JAXBException
+	 *             when the configuration cannot be parsed.
+	 */
+	public static void archive(File config, File output) throws IOException, JAXBException {
+		File configFile = config.getAbsoluteFile();
+		File outputFile = output.getAbsoluteFile();
+		Path baseDir = configFile.getParentFile().toPath();
+		URI baseUri = baseDir.toUri();
+		Configuration configuration = ConfigurationReader.parseConfiguration(configFile);
+		DocumentMapper.Mapping mapping = DocumentMapper.resolve(configuration, baseUri);
+
+		// the targets that are not mapped explicitly are resolved when packing
+		StringBuilder targets = new StringBuilder();
+		for (Entry<String, URL> e : mapping.defaults.entrySet()) {
+			String name = baseUri.relativize(URI.create(e.getValue().toString())).toString();
+			targets.append(e.getKey()).append('\t').append(name).append('\n');
+		}
+
+		Map<String, URL> mappedContent = new HashMap<>();
+		mapping.mergeInto(mappedContent);
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		MappedIndexSegment.write(HelpsetIndexer.index(mappedContent), index);
+
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(baseDir)) {
+			files = walk.filter(Files::isRegularFile)
+					.filter(f -> !f.toFile().equals(configFile) && !f.toFile().equals(outputFile))
+					.sorted().collect(Collectors.toList());
+		}
+
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(outputFile))) {
+			put(out, HelpsetArchive.CONFIG_NAME, Files.readAllBytes(configFile.toPath()));
+			put(out, HelpsetArchive.TARGETS_NAME, targets.toString().getBytes(StandardCharsets.UTF_8));
+			// stored, so that the index is mapped instead of being inflated
+			put(out, MappedIndexSegment.FILE_NAME, index.toByteArray());
+			for (Path file : files) {
+				String name = baseDir.relativize(file).toString().replace(File.separatorChar, '/');
+				if (name.equals(HelpsetArchive.CONFIG_NAME) || name.equals(HelpsetArchive.TARGETS_NAME)
+						|| name.equals(MappedIndexSegment.FILE_NAME))
+					continue;
+				put(out, name, Files.readAllBytes(file));
+			}
+		}
+	}
+
+	/*
+	 * Writes an entry. Compressed images and the index are stored, the other
+	 * files are deflated.
+	 */
+	private static void put(ZipOutputStream out, String name, byte[] data) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		if (isStored(name)) {
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(data.length);
+			entry.setCompressedSize(data.length);
+			entry.setCrc(crc.getValue());
+		}
+		out.putNextEntry(entry);
+		out.write(data);
+		out.closeEntry();
+	}
+
+	private static boolean isStored(String name) {
+		String lower = name.toLowerCase(Locale.ROOT);
+		return lower.equals(MappedIndexSegment.FILE_NAME) || lower.endsWith(".png") || lower.endsWith(".jpg")
+				|| lower.endsWith(".jpeg") || lower.endsWith(".gif");
+	}
+
+	/**
+	 * The main method that writes the archive.
+	 * 
+	 * @param args the command-line parameters.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: HelpsetArchiver <configuration file> <archive>");
+			System.exit(2);
+		}
+		try {
+			archive(new File(args[0]), new File(args[1]));
+		} catch (JAXBException | IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.IndexItem;
+import org.kovesdan.minihelp.xml.TOCItem;
+
+/**
+ * The merged contents of the helpsets: the mapped documents, the full-text
+ * index, the table of contents with a root item for each helpset and the
+ * merged index. Does not depend on Swing, so the same contents back the help
+ * window and the headless search engine.
+ */
+class HelpsetContents {
+	final Map<String, URL> mappedContent = new HashMap<>();
+	final FullTextIndex fullTextIndex = new FullTextIndex();
+	final List<TOCItem> tableOfContents = new ArrayList<>();
+	final List<IndexItem> indexes = new ArrayList<>();
+	final List<URI> baseUris = new ArrayList<>();
+	private String homeID;
+
+	/**
+	 * Loads the helpsets in parallel, then merges them in their order. The
+	 * items of the merged index are not modified, only replaced by merged
+	 * copies, so the index can be searched while helpsets are added.
+	 * 
+	 * @return the helpsets that could be loaded.
+	 */
+	List<Helpset> add(List<Helpset> helpsets) {
+		List<Helpset> loaded = helpsets.parallelStream().filter(Helpset::load).collect(Collectors.toList());
+		List<IndexItem> merged = new ArrayList<>(indexes);
+		IndexMerger indexMerger = new IndexMerger(merged);
+		for (Helpset hs : loaded) {
+			Configuration configuration = hs.configuration;
+			hs.mapping.mergeInto(mappedContent);
+			baseUris.add(hs.baseUri);
+			if (hs.fullTextIndex != null)
+				fullTextIndex.addSegment(hs.fullTextIndex);
+
+			// copy TOC
+			TOCItem rootTOC = new TOCItem();
+			rootTOC.setText(configuration.getTitle());
+			rootTOC.setTarget(configuration.getHomeID());
+			rootTOC.getTOCItems().addAll(configuration.getTOCItems());
+			tableOfContents.add(rootTOC);
+
+			// merge indexes
+			for (IndexItem i : configuration.getIndexItems())
+				indexMerger.merge(i);
+
+			if (homeID == null)
+				homeID = configuration.getHomeID();
+		}
+		indexes.clear();
+		indexes.addAll(merged);
+		return loaded;
+	}
+
+	/**
+	 * Returns the home target of the first helpset.
+	 */
+	String getHomeID() {
+		return homeID;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.ConfigurationReader;
+
+/**
+ * Command-line tool that builds the full-text index of a helpset at build
+ * time. The first argument is the path to the configuration file and the
+ * optional second argument is the path of the index file to write. By
+ * default, the index is written next to the configuration file, where the
+ * help window picks it up when the helpset is added.
+ * 
+ * @author Gábor Kövesdán
+ */
+public class HelpsetIndexer {
+
+	/**
+	 * Indexes all documents mapped by the given helpset and writes the index
+	 * to a file.
+	 * 
+	 * @param configuration
+	 *            the configuration of the helpset.
+	 * @param baseUri
+	 *            the URI where the documents are looked for.
+	 * @param output
+	 *            the index file to write.
+	 * @throws IOException
+	 *             when a document cannot be read or the index cannot be
+	 *             written.
+	 */
+	public static void index(Configuration configuration, URI baseUri, File output) throws IOException {
+		Map<String, URL> mappedContent = new HashMap<>();
+		DocumentMapper.map(configuration, baseUri, mappedContent);
+		MappedIndexSegment.write(index(mappedContent), output);
+	}
+
+	/**
+	 * Indexes the given documents.
+	 */
+	static MemoryIndexSegment index(Map<String, URL> mappedContent) throws IOException {
+		MemoryIndexSegment segment = new MemoryIndexSegment();
+		for (Entry<String, URL> e : mappedContent.entrySet()) {
+			FullTextIndex.DocumentText document = FullTextIndex.read(e.getValue());
+			segment.addDocument(e.getKey(), document.tokens, document.text);
+		}
+		return segment;
+	}
+
+	/**
+	 * The main method that writes the index file.
+	 * 
+	 * @param args the command-line parameters.
+	 */
+	public static void main(String[] args) {
+		try {
+			File config = new File(args[0]);
+			URI baseUri = config.getAbsoluteFile().getParentFile().toURI();
+			File output = (args.length > 1) ? new File(args[1])
+					: new File(config.getAbsoluteFile().getParentFile(), MappedIndexSegment.FILE_NAME);
+			Configuration configuration = ConfigurationReader.parseConfiguration(config);
+			index(configuration, baseUri, output);
+		} catch (JAXBException | IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
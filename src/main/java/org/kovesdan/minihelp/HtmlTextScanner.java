@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming scanner that extracts the visible text of an HTML document. The
+ * markup, comments and the content of script and style elements are skipped,
+ * entities are decoded and whitespace is collapsed. The text is passed to a
+ * {@link TextHandler} in runs that point into the scanner's own buffer, which
+ * is reused from document to document, so no strings are built for the text.
+ */
+class HtmlTextScanner {
+
+	/**
+	 * Receives the text of a document.
+	 */
+	interface TextHandler {
+
+		/**
+		 * Called with a run of text. The characters are only valid until the
+		 * method returns.
+		 */
+		void text(char[] text, int start, int length);
+
+		/**
+		 * Called at the end of a block-level element and at the end of the
+		 * document. Text of different blocks should not be joined.
+		 * 
+		 * @return whether to continue scanning.
+		 */
+		boolean endOfBlock();
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int SNIFF_SIZE = 1024;
+	private static final int MAX_ENTITY_LENGTH = 10;
+	private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+	private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern META_CHARSET = Pattern.compile("<meta[^>]*charset\\s*=\\s*[\"']?([\\w.:-]+)",
+			Pattern.CASE_INSENSITIVE);
+	private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList("address", "article", "aside",
+			"blockquote", "body", "br", "caption", "dd", "div", "dl", "dt", "footer", "form", "h1", "h2", "h3", "h4",
+			"h5", "h6", "head", "header", "hr", "html", "li", "nav", "ol", "p", "pre", "section", "table", "tbody",
+			"td", "tfoot", "th", "thead", "title", "tr", "ul"));
+	private static final String[] LATIN1_ENTITIES = { "nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar",
+			"sect", "uml", "copy", "ordf", "laquo", "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3",
+			"acute", "micro", "para", "middot", "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34",
+			"iquest", "Agrave", "Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave", "Eacute",
+			"Ecirc", "Euml", "Igrave", "Iacute", "Icirc", "Iuml", "ETH", "Ntilde", "Ograve", "Oacute", "Ocirc",
+			"Otilde", "Ouml", "times", "Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN", "szlig",
+			"agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig", "ccedil", "egrave", "eacute", "ecirc",
+			"euml", "igrave", "iacute", "icirc", "iuml", "eth", "ntilde", "ograve", "oacute", "ocirc", "otilde",
+			"ouml", "divide", "oslash", "ugrave", "uacute", "ucirc", "uuml", "yacute", "thorn", "yuml" };
+	private static final Map<String, Integer> ENTITIES = new HashMap<>();
+	private static final ThreadLocal<HtmlTextScanner> SCANNERS = ThreadLocal.withInitial(HtmlTextScanner::new);
+
+	static {
+		for (int i = 0; i < LATIN1_ENTITIES.length; i++)
+			ENTITIES.put(LATIN1_ENTITIES[i], 160 + i);
+		ENTITIES.put("amp", (int) '&');
+		ENTITIES.put("lt", (int) '<');
+		ENTITIES.put("gt", (int) '>');
+		ENTITIES.put("quot", (int) '"');
+		ENTITIES.put("apos", (int) '\'');
+		ENTITIES.put("Odblac", 0x150);
+		ENTITIES.put("odblac", 0x151);
+		ENTITIES.put("Udblac", 0x170);
+		ENTITIES.put("udblac", 0x171);
+		ENTITIES.put("ndash", 0x2013);
+		ENTITIES.put("mdash", 0x2014);
+		ENTITIES.put("lsquo", 0x2018);
+		ENTITIES.put("rsquo", 0x2019);
+		ENTITIES.put("ldquo", 0x201c);
+		ENTITIES.put("rdquo", 0x201d);
+		ENTITIES.put("bull", 0x2022);
+		ENTITIES.put("hellip", 0x2026);
+		ENTITIES.put("euro", 0x20ac);
+		ENTITIES.put("trade", 0x2122);
+	}
+
+	private static final int TEXT = 0;
+	private static final int TAG = 1;
+	private static final int COMMENT = 2;
+	private static final int ENTITY = 3;
+	private static final int RAW_TEXT = 4;
+
+	private char[] buffer = new char[BUFFER_SIZE];
+	private char[] scratch = new char[MAX_ENTITY_LENGTH + 2];
+	private StringBuilder name = new StringBuilder();
+	private TextHandler handler;
+	private int state;
+	private int runStart;
+	private boolean space;
+	private boolean closing;
+	private boolean inName;
+	private char quote;
+	private int dashes;
+	private String rawTextEnd;
+	private int matched;
+
+	/**
+	 * Returns the scanner of the current thread.
+	 */
+	static HtmlTextScanner get() {
+		return SCANNERS.get();
+	}
+
+	public void scan(URL url, TextHandler handler) throws IOException {
+		URLConnection connection = HelpsetArchive.openConnection(url);
+		try (InputStream is = new BufferedInputStream(connection.getInputStream())) {
+			Charset charset = detectCharset(connection.getContentType(), is);
+			scan(new InputStreamReader(is, charset), handler);
+		}
+	}
+
+	public void scan(Reader in, TextHandler handler) throws IOException {
+		this.handler = handler;
+		state = TEXT;
+		space = true;
+		try {
+			int n;
+			while ((n = in.read(buffer)) != -1)
+				if (!process(n))
+					return;
+			if (state == ENTITY)
+				emitLiteralEntity();
+			handler.endOfBlock();
+		} finally {
+			this.handler = null;
+		}
+	}
+
+	/**
+	 * Determines the charset of a document from the content type, the byte
+	 * order mark or a meta element in the head of the document, in this
+	 * order. The stream must support mark and reset.
+	 */
+	static Charset detectCharset(String contentType, InputStream in) throws IOException {
+		Charset charset = (contentType != null) ? charset(CHARSET.matcher(contentType)) : null;
+		if (charset != null)
+			return charset;
+
+		byte[] head = new byte[SNIFF_SIZE];
+		int n = 0;
+		in.mark(SNIFF_SIZE);
+		for (int r; n < head.length && (r = in.read(head, n, head.length - n)) != -1;)
+			n += r;
+		in.reset();
+
+		if (n >= 3 && head[0] == (byte) 0xef && head[1] == (byte) 0xbb && head[2] == (byte) 0xbf)
+			return StandardCharsets.UTF_8;
+		if (n >= 2 && ((head[0] == (byte) 0xfe && head[1] == (byte) 0xff)
+				|| (head[0] == (byte) 0xff && head[1] == (byte) 0xfe)))
+			return StandardCharsets.UTF_16;
+		charset = charset(META_CHARSET.matcher(new String(head, 0, n, StandardCharsets.ISO_8859_1)));
+		return (charset != null) ? charset : DEFAULT_CHARSET;
+	}
+
+	private static Charset charset(Matcher matcher) {
+		if (!matcher.find())
+			return null;
+		try {
+			return Charset.forName(matcher.group(1));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private boolean process(int length) throws IOException {
+		runStart = 0;
+		for (int i = 0; i < length; i++) {
+			char c = buffer[i];
+			switch (state) {
+			case TEXT:
+				if (c == '<') {
+					flushRun(i);
+					state = TAG;
+					name.setLength(0);
+					closing = false;
+					inName = true;
+					quote = 0;
+				} else if (c == '&') {
+					flushRun(i);
+					state = ENTITY;
+					name.setLength(0);
+				} else if (Character.isWhitespace(c) || c == '\u00a0') {
+					if (space) {
+						flushRun(i);
+						runStart = i + 1;
+					} else {
+						buffer[i] = ' ';
+						space = true;
+					}
+				} else {
+					space = false;
+				}
+				break;
+			case TAG:
+				if (inName && name.length() == 0 && !closing && c != '/' && c != '!' && c != '?'
+						&& !Character.isLetter(c)) {
+					// not a tag, just a lonely '<'
+					emit('<');
+					state = TEXT;
+					runStart = i--;
+				} else if (quote != 0) {
+					if (c == quote)
+						quote = 0;
+				} else if (c == '>') {
+					if (!endOfTag())
+						return false;
+					runStart = i + 1;
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+					inName = false;
+				} else if (inName) {
+					if (c == '/' && name.length() == 0) {
+						closing = true;
+					} else if (Character.isWhitespace(c) || c == '/') {
+						inName = false;
+					} else {
+						name.append(Character.toLowerCase(c));
+						if (name.length() == 3 && name.charAt(0) == '!' && name.charAt(1) == '-'
+								&& name.charAt(2) == '-') {
+							state = COMMENT;
+							dashes = 0;
+						}
+					}
+				}
+				break;
+			case COMMENT:
+				if (c == '>' && dashes >= 2) {
+					state = TEXT;
+					runStart = i + 1;
+				}
+				dashes = (c == '-') ? dashes + 1 : 0;
+				break;
+			case ENTITY:
+				if (c == ';') {
+					state = TEXT;
+					if (emitEntity()) {
+						runStart = i + 1;
+					} else {
+						emitLiteralEntity();
+						runStart = i;
+					}
+				} else if (name.length() < MAX_ENTITY_LENGTH
+						&& (Character.isLetterOrDigit(c) || (c == '#' && name.length() == 0))) {
+					name.append(c);
+				} else {
+					emitLiteralEntity();
+					state = TEXT;
+					runStart = i--;
+				}
+				break;
+			case RAW_TEXT:
+				if (Character.toLowerCase(c) == rawTextEnd.charAt(matched)) {
+					if (++matched == rawTextEnd.length()) {
+						state = TAG;
+						name.setLength(0);
+						name.append(rawTextEnd, 2, rawTextEnd.length());
+						closing = true;
+						inName = false;
+						quote = 0;
+					}
+				} else {
+					matched = (c == '<') ? 1 : 0;
+				}
+				break;
+			}
+		}
+		if (state == TEXT)
+			flushRun(length);
+		return true;
+	}
+
+	private void flushRun(int end) {
+		if (end > runStart)
+			handler.text(buffer, runStart, end - runStart);
+		runStart = end;
+	}
+
+	private boolean endOfTag() {
+		String tag = name.toString();
+		state = TEXT;
+		if (BLOCK_TAGS.contains(tag)) {
+			space = true;
+			if (!handler.endOfBlock())
+				return false;
+		}
+		if (!closing && (tag.equals("script") || tag.equals("style"))) {
+			state = RAW_TEXT;
+			rawTextEnd = "</" + tag;
+			matched = 0;
+		}
+		return true;
+	}
+
+	private boolean emitEntity() {
+		int codePoint;
+		if (name.length() > 1 && name.charAt(0) == '#') {
+			try {
+				boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+				codePoint = Integer.parseInt(name.substring(hex ? 2 : 1), hex ? 16 : 10);
+			} catch (NumberFormatException e) {
+				return false;
+			}
+			if (!Character.isValidCodePoint(codePoint))
+				return false;
+		} else {
+			Integer value = ENTITIES.get(name.toString());
+			if (value == null)
+				return false;
+			codePoint = value;
+		}
+		if (Character.isWhitespace(codePoint) || codePoint == '\u00a0') {
+			if (!space)
+				emit(' ');
+			space = true;
+		} else {
+			space = false;
+			handler.text(scratch, 0, Character.toChars(codePoint, scratch, 0));
+		}
+		return true;
+	}
+
+	private void emitLiteralEntity() {
+		scratch[0] = '&';
+		name.getChars(0, name.length(), scratch, 1);
+		handler.text(scratch, 0, name.length() + 1);
+		space = false;
+	}
+
+	private void emit(char c) {
+		scratch[0] = c;
+		handler.text(scratch, 0, 1);
+		space = false;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+import org.kovesdan.minihelp.xml.IndexItem;
+
+/**
+ * Flattened, sorted view of the hierarchical index. The items are referenced
+ * in display order with their depth, and every top-level item is followed by
+ * its subtree, so the items whose top-level term starts with a given prefix
+ * form a contiguous range of rows that is found by binary search. The index
+ * lists themselves are not modified.
+ */
+class IndexListModel extends AbstractListModel<IndexItem> {
+	private static final long serialVersionUID = 1L;
+	private static final Comparator<IndexItem> ORDER = (o1, o2) -> {
+		int c = String.CASE_INSENSITIVE_ORDER.compare(o1.getText(), o2.getText());
+		return (c != 0) ? c : o1.getText().compareTo(o2.getText());
+	};
+
+	private IndexItem[] items = new IndexItem[0];
+	private int[] depths = new int[0];
+	private int[] topLevelOffsets = { 0 };
+	private int from;
+	private int to;
+
+	/**
+	 * Rebuilds the view from the index and shows all the items.
+	 */
+	public void setIndex(List<IndexItem> index) {
+		List<IndexItem> flatItems = new ArrayList<>();
+		List<Integer> flatDepths = new ArrayList<>();
+		List<IndexItem> topLevel = sorted(index);
+		topLevelOffsets = new int[topLevel.size() + 1];
+		for (int i = 0; i < topLevel.size(); i++) {
+			topLevelOffsets[i] = flatItems.size();
+			flatten(topLevel.get(i), 0, flatItems, flatDepths);
+		}
+		topLevelOffsets[topLevel.size()] = flatItems.size();
+
+		int oldSize = getSize();
+		items = flatItems.toArray(new IndexItem[flatItems.size()]);
+		depths = new int[items.length];
+		for (int i = 0; i < depths.length; i++)
+			depths[i] = flatDepths.get(i);
+		from = 0;
+		to = items.length;
+		fireChanged(oldSize);
+	}
+
+	private static List<IndexItem> sorted(List<IndexItem> items) {
+		List<IndexItem> copy = new ArrayList<>(items);
+		copy.sort(ORDER);
+		return copy;
+	}
+
+	private static void flatten(IndexItem item, int depth, List<IndexItem> flatItems, List<Integer> flatDepths) {
+		flatItems.add(item);
+		flatDepths.add(depth);
+		for (IndexItem i : sorted(item.getIndexItems()))
+			flatten(i, depth + 1, flatItems, flatDepths);
+	}
+
+	/**
+	 * Shows only the top-level terms that start with the given prefix,
+	 * ignoring case, together with their subterms.
+	 */
+	public void filter(String prefix) {
+		int oldSize = getSize();
+		int topLevelCount = topLevelOffsets.length - 1;
+		int first = search(prefix, false, topLevelCount);
+		int last = search(prefix, true, topLevelCount);
+		from = topLevelOffsets[first];
+		to = topLevelOffsets[last];
+		fireChanged(oldSize);
+	}
+
+	/*
+	 * Returns the first top-level term whose beginning is not less than, or
+	 * with after set, greater than the prefix.
+	 */
+	private int search(String prefix, boolean after, int count) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			String text = items[topLevelOffsets[mid]].getText();
+			if (text.length() > prefix.length())
+				text = text.substring(0, prefix.length());
+			int c = String.CASE_INSENSITIVE_ORDER.compare(text, prefix);
+			if (c < 0 || (after && c == 0))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private void fireChanged(int oldSize) {
+		int size = Math.max(oldSize, getSize());
+		if (size > 0)
+			fireContentsChanged(this, 0, size - 1);
+	}
+
+	/**
+	 * Returns the nesting level of the item in the given row.
+	 */
+	public int getDepth(int index) {
+		return depths[from + index];
+	}
+
+	@Override
+	public IndexItem getElementAt(int index) {
+		return items[from + index];
+	}
+
+	@Override
+	public int getSize() {
+		return to - from;
+	}
+}
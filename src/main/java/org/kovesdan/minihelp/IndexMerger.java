@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.kovesdan.minihelp.xml.IndexEntry;
+import org.kovesdan.minihelp.xml.IndexItem;
+
+/**
+ * Merges the index items of helpsets into one list. Items with the same text
+ * on the same level are merged recursively and their entries are combined,
+ * keeping only the first entry for each target. Every level keeps its items
+ * in a hash map by text, so merging takes time linear in the number of items
+ * merged.
+ * <p>
+ * The merged items are not modified: an item is copied, together with the
+ * lists of its children and entries, before another item is merged into it.
+ * A tree that was merged earlier can thus be merged by a new merger while it
+ * is being read.
+ */
+class IndexMerger {
+	private final List<IndexItem> items;
+	private final Map<String, Node> nodes = new HashMap<>();
+
+	private static class Node {
+		IndexItem item;
+		final List<IndexItem> owner;
+		final int position;
+		IndexMerger children;
+		Set<String> entryTargets;
+
+		Node(IndexItem item, List<IndexItem> owner, int position) {
+			this.item = item;
+			this.owner = owner;
+			this.position = position;
+		}
+
+		/*
+		 * The copy and the lookup structures of an item are only made when
+		 * another item is merged into it.
+		 */
+		void merge(IndexItem other) {
+			if (children == null) {
+				item = copy(item);
+				owner.set(position, item);
+				children = new IndexMerger(item.getIndexItems());
+			}
+			for (IndexItem i : other.getIndexItems())
+				children.merge(i);
+
+			if (entryTargets == null) {
+				entryTargets = new HashSet<>();
+				dedupe(item.getIndexEntries());
+			}
+			for (IndexEntry e : other.getIndexEntries())
+				if (entryTargets.add(e.getTarget()))
+					item.getIndexEntries().add(e);
+		}
+
+		private static IndexItem copy(IndexItem item) {
+			IndexItem copy = new IndexItem();
+			copy.setText(item.getText());
+			copy.setTarget(item.getTarget());
+			copy.getIndexItems().addAll(item.getIndexItems());
+			copy.getIndexEntries().addAll(item.getIndexEntries());
+			return copy;
+		}
+
+		private void dedupe(List<IndexEntry> entries) {
+			for (Iterator<IndexEntry> it = entries.iterator(); it.hasNext();)
+				if (!entryTargets.add(it.next().getTarget()))
+					it.remove();
+		}
+	}
+
+	/**
+	 * Creates a merger that merges into the given list. The items already in
+	 * the list are merged with each other first.
+	 */
+	public IndexMerger(List<IndexItem> items) {
+		this.items = items;
+		List<IndexItem> existing = new ArrayList<>(items);
+		items.clear();
+		for (IndexItem i : existing)
+			merge(i);
+	}
+
+	/**
+	 * Merges an item into the list.
+	 */
+	public void merge(IndexItem item) {
+		Node same = nodes.get(item.getText());
+		if (same != null) {
+			same.merge(item);
+		} else {
+			nodes.put(item.getText(), new Node(item, items, items.size()));
+			items.add(item);
+		}
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A set of indexed documents with their term dictionary and postings. The
+ * documents are numbered from zero within the segment and terms are iterated
+ * in their natural order. A term is also identified by its ordinal, its
+ * position in that order.
+ * <p>
+ * Words that may occur inside a term are looked up in the suffix table, which
+ * lists every suffix of every term in ascending order. A suffix is stored as
+ * the ordinal of its term in the upper and its offset in the lower 32 bits of
+ * a long, so the terms that contain a word are found by a binary search for
+ * the suffixes starting with it.
+ */
+abstract class IndexSegment {
+
+	static class Posting {
+		final int document;
+		final int[] positions;
+
+		Posting(int document, int[] positions) {
+			this.document = document;
+			this.positions = positions;
+		}
+	}
+
+	/**
+	 * The term statistics of the documents that contain a sequence of words.
+	 */
+	static class Matches {
+		final int[] documentFrequencies;
+		final Map<Integer, int[]> termFrequencies = new HashMap<>();
+
+		Matches(int words) {
+			documentFrequencies = new int[words];
+		}
+	}
+
+	abstract int getDocumentCount();
+
+	abstract String getTarget(int document);
+
+	/**
+	 * Returns the number of tokens in a document.
+	 */
+	abstract int getDocumentLength(int document);
+
+	/**
+	 * Returns the number of tokens in all documents of the segment.
+	 */
+	abstract long getTotalLength();
+
+	/**
+	 * Returns the number of the document with the given target or -1 if it
+	 * is not in the segment.
+	 */
+	abstract int getDocument(String target);
+
+	/**
+	 * Returns the deflated plain text of a document, with its blocks
+	 * separated by line breaks.
+	 */
+	abstract byte[] getCompressedText(int document);
+
+	boolean contains(String target) {
+		return getDocument(target) >= 0;
+	}
+
+	String getText(int document) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(getCompressedText(document));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buf);
+				if (n == 0 && inflater.needsInput())
+					break;
+				out.write(buf, 0, n);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			return "";
+		} finally {
+			inflater.end();
+		}
+	}
+
+	static byte[] compress(CharSequence text) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(text.toString().getBytes(StandardCharsets.UTF_8));
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			while (!deflater.finished())
+				out.write(buf, 0, deflater.deflate(buf));
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Returns the terms that are greater than or equal to the given one, in
+	 * ascending order.
+	 */
+	abstract Iterable<String> getTerms(String from);
+
+	/**
+	 * Returns the postings of a term, ordered by document, or null if the term
+	 * does not occur in the segment.
+	 */
+	abstract List<Posting> getPostings(String term);
+
+	abstract int getTermCount();
+
+	abstract String getTerm(int ordinal);
+
+	/**
+	 * Returns the postings of the term with the given ordinal, ordered by
+	 * document.
+	 */
+	abstract List<Posting> getPostings(int ordinal);
+
+	abstract int getSuffixCount();
+
+	/**
+	 * Returns a suffix of the suffix table, see {@link #suffix(int, int)}.
+	 */
+	abstract long getSuffix(int index);
+
+	/**
+	 * Returns the ordinal of the first term that is greater than or equal to
+	 * the given one.
+	 */
+	int seek(String term) {
+		int low = 0;
+		int high = getTermCount();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getTerm(mid).compareTo(term) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/*
+	 * Returns the index of the first suffix in the suffix table that is
+	 * greater than or equal to the given word.
+	 */
+	private int seekSuffix(String word) {
+		int low = 0;
+		int high = getSuffixCount();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			long suffix = getSuffix(mid);
+			if (compare(getTerm(ordinal(suffix)), offset(suffix), word, 0) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	static long suffix(int ordinal, int offset) {
+		return ((long) ordinal << 32) | offset;
+	}
+
+	static int ordinal(long suffix) {
+		return (int) (suffix >>> 32);
+	}
+
+	static int offset(long suffix) {
+		return (int) suffix;
+	}
+
+	/**
+	 * Returns the suffix table of the given terms, which are in ascending
+	 * order.
+	 */
+	static long[] sortSuffixes(List<String> terms) {
+		int size = 0;
+		for (String term : terms)
+			size += term.length();
+		long[] table = new long[size];
+		int n = 0;
+		for (int i = 0; i < terms.size(); i++)
+			for (int j = 0; j < terms.get(i).length(); j++)
+				table[n++] = suffix(i, j);
+		// merge sort, since Arrays.sort() cannot order primitives by a comparator
+		long[] from = table;
+		long[] to = new long[size];
+		for (int width = 1; width < size; width *= 2) {
+			for (int low = 0; low < size; low += 2 * width) {
+				int mid = Math.min(low + width, size);
+				int high = Math.min(low + 2 * width, size);
+				int i = low;
+				int j = mid;
+				for (int k = low; k < high; k++) {
+					if (j >= high || i < mid && compare(terms, from[i], from[j]) <= 0)
+						to[k] = from[i++];
+					else
+						to[k] = from[j++];
+				}
+			}
+			long[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if (from != table)
+			System.arraycopy(from, 0, table, 0, size);
+		return table;
+	}
+
+	private static int compare(List<String> terms, long a, long b) {
+		return compare(terms.get(ordinal(a)), offset(a), terms.get(ordinal(b)), offset(b));
+	}
+
+	/*
+	 * Compares the suffixes of two strings as String.compareTo() compares
+	 * the strings.
+	 */
+	private static int compare(String a, int i, String b, int j) {
+		int n = Math.min(a.length() - i, b.length() - j);
+		for (int k = 0; k < n; k++) {
+			char c = a.charAt(i + k);
+			char d = b.charAt(j + k);
+			if (c != d)
+				return c - d;
+		}
+		return (a.length() - i) - (b.length() - j);
+	}
+
+	/**
+	 * Finds the documents that contain the given sequence of words. The first
+	 * word may be the end of a longer term and the last one may be the
+	 * beginning of one; a single word may occur anywhere in a term. For each
+	 * word, the number of documents containing it and its number of
+	 * occurrences in each matching document are returned.
+	 */
+	Matches match(List<String> words) {
+		Matches result = new Matches(words.size());
+		if (words.isEmpty())
+			return result;
+
+		List<Map<Integer, BitSet>> occurrences = new ArrayList<>();
+		for (int i = 0; i < words.size(); i++) {
+			Map<Integer, BitSet> o = positions(words.get(i), i == 0, i == words.size() - 1);
+			result.documentFrequencies[i] = o.size();
+			occurrences.add(o);
+		}
+
+		Map<Integer, BitSet> hits = occurrences.get(0);
+		for (int i = 1; i < words.size() && !hits.isEmpty(); i++) {
+			Map<Integer, BitSet> next = occurrences.get(i);
+			Map<Integer, BitSet> joined = new HashMap<>();
+			for (Map.Entry<Integer, BitSet> e : hits.entrySet()) {
+				BitSet following = next.get(e.getKey());
+				if (following == null)
+					continue;
+				// the phrase continues where the next word directly follows
+				BitSet matched = new BitSet();
+				BitSet previous = e.getValue();
+				for (int p = previous.nextSetBit(0); p >= 0; p = previous.nextSetBit(p + 1))
+					if (following.get(p + 1))
+						matched.set(p + 1);
+				if (!matched.isEmpty())
+					joined.put(e.getKey(), matched);
+			}
+			hits = joined;
+		}
+
+		for (Integer document : hits.keySet()) {
+			int[] frequencies = new int[words.size()];
+			for (int i = 0; i < frequencies.length; i++)
+				frequencies[i] = occurrences.get(i).get(document).cardinality();
+			result.termFrequencies.put(document, frequencies);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the terms that the automaton accepts, with their edit distance.
+	 * The terms are run through the automaton in order, sharing the states of
+	 * their common prefixes, and when a prefix cannot be accepted any more,
+	 * the terms starting with it are skipped by seeking past them.
+	 */
+	Map<String, Integer> expand(LevenshteinAutomaton automaton) {
+		Map<String, Integer> result = new HashMap<>();
+		List<int[]> states = new ArrayList<>();
+		states.add(automaton.start());
+		String previous = "";
+		String from = "";
+		while (from != null) {
+			String skipTo = null;
+			for (String term : getTerms(from)) {
+				int common = 0;
+				int max = Math.min(previous.length(), term.length());
+				while (common < max && previous.charAt(common) == term.charAt(common))
+					common++;
+				states.subList(common + 1, states.size()).clear();
+
+				int i = common;
+				while (i < term.length() && automaton.canMatch(states.get(i))) {
+					states.add(automaton.step(states.get(i), term.charAt(i)));
+					i++;
+				}
+				if (!automaton.canMatch(states.get(i))) {
+					previous = term.substring(0, i);
+					skipTo = successor(previous);
+					break;
+				}
+				previous = term;
+				if (automaton.isMatch(states.get(i)))
+					result.put(term, automaton.distance(states.get(i)));
+			}
+			from = skipTo;
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the smallest string that is greater than every string with the
+	 * given prefix, or null if there is none.
+	 */
+	private static String successor(String prefix) {
+		StringBuilder sb = new StringBuilder(prefix);
+		while (sb.length() > 0) {
+			char last = sb.charAt(sb.length() - 1);
+			if (last != Character.MAX_VALUE) {
+				sb.setCharAt(sb.length() - 1, (char) (last + 1));
+				return sb.toString();
+			}
+			sb.setLength(sb.length() - 1);
+		}
+		return null;
+	}
+
+	private Map<Integer, BitSet> positions(String word, boolean first, boolean last) {
+		Map<Integer, BitSet> result = new HashMap<>();
+		if (!first && !last) {
+			addPositions(result, getPostings(word));
+		} else if (!first) {
+			for (int ordinal = seek(word); ordinal < getTermCount() && getTerm(ordinal).startsWith(word); ordinal++)
+				addPositions(result, getPostings(ordinal));
+		} else {
+			BitSet found = new BitSet();
+			for (int i = seekSuffix(word); i < getSuffixCount(); i++) {
+				long suffix = getSuffix(i);
+				String term = getTerm(ordinal(suffix));
+				if (!term.startsWith(word, offset(suffix)))
+					break;
+				// the suffixes that equal the word come before the longer ones
+				if (!last && term.length() > offset(suffix) + word.length())
+					break;
+				// a term may contain the word more than once
+				if (!found.get(ordinal(suffix))) {
+					found.set(ordinal(suffix));
+					addPositions(result, getPostings(ordinal(suffix)));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static void addPositions(Map<Integer, BitSet> result, List<Posting> list) {
+		if (list == null)
+			return;
+		for (Posting p : list) {
+			BitSet bits = result.computeIfAbsent(p.document, d -> new BitSet());
+			for (int pos : p.positions)
+				bits.set(pos);
+		}
+	}
+}
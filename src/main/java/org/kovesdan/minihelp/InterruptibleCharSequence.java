@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Text that stops a regular expression matching it when the search is
+ * cancelled. A matcher does not check for interrupts itself, so a pattern that
+ * backtracks catastrophically could otherwise not be cancelled.
+ */
+class InterruptibleCharSequence implements CharSequence {
+	private static final int CHECK_INTERVAL = 1024;
+	private final CharSequence text;
+	private final BooleanSupplier cancelled;
+	private int reads;
+
+	/**
+	 * @param text
+	 *            the text to match.
+	 * @param cancelled
+	 *            tells whether the matching should stop. It is called from
+	 *            the matching thread.
+	 */
+	InterruptibleCharSequence(CharSequence text, BooleanSupplier cancelled) {
+		this.text = text;
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * @throws CancellationException
+	 *             if the matching has been cancelled.
+	 */
+	@Override
+	public char charAt(int index) {
+		if (++reads == CHECK_INTERVAL) {
+			reads = 0;
+			if (cancelled.getAsBoolean())
+				throw new CancellationException();
+		}
+		return text.charAt(index);
+	}
+
+	@Override
+	public int length() {
+		return text.length();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return text.subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+}
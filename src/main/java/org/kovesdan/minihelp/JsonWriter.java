@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON text. The separators are inserted by the writer, so the values
+ * only have to be written in order.
+ */
+class JsonWriter {
+	private final StringBuilder sb = new StringBuilder();
+	private boolean separate;
+
+	public JsonWriter beginObject() {
+		separate();
+		sb.append('{');
+		separate = false;
+		return this;
+	}
+
+	public JsonWriter endObject() {
+		sb.append('}');
+		separate = true;
+		return this;
+	}
+
+	public JsonWriter beginArray() {
+		separate();
+		sb.append('[');
+		separate = false;
+		return this;
+	}
+
+	public JsonWriter endArray() {
+		sb.append(']');
+		separate = true;
+		return this;
+	}
+
+	public JsonWriter name(String name) {
+		separate();
+		quote(name);
+		sb.append(':');
+		separate = false;
+		return this;
+	}
+
+	public JsonWriter value(String value) {
+		separate();
+		if (value == null)
+			sb.append("null");
+		else
+			quote(value);
+		separate = true;
+		return this;
+	}
+
+	public JsonWriter value(long value) {
+		separate();
+		sb.append(value);
+		separate = true;
+		return this;
+	}
+
+	public JsonWriter value(double value) {
+		separate();
+		// JSON has no literals for infinities and NaN
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			sb.append("null");
+		else
+			sb.append(value);
+		separate = true;
+		return this;
+	}
+
+	private void separate() {
+		if (separate)
+			sb.append(',');
+	}
+
+	private void quote(String s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	public byte[] toBytes() {
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return sb.toString();
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+/**
+ * Automaton that accepts the strings within a maximum edit distance of a
+ * word. A state is the row of the edit distance matrix of the characters
+ * read so far, so the automaton can be run character by character along a
+ * sorted dictionary or a trie and a prefix can be abandoned as soon as no
+ * continuation of it can be accepted.
+ */
+class LevenshteinAutomaton {
+	private final String word;
+	private final int maxDistance;
+
+	public LevenshteinAutomaton(String word, int maxDistance) {
+		this.word = word;
+		this.maxDistance = maxDistance;
+	}
+
+	/**
+	 * Creates an automaton that allows no typos in words shorter than three
+	 * characters, one in words shorter than six characters and two in longer
+	 * ones.
+	 */
+	public LevenshteinAutomaton(String word) {
+		this(word, (word.length() < 3) ? 0 : (word.length() < 6) ? 1 : 2);
+	}
+
+	public int[] start() {
+		int[] state = new int[word.length() + 1];
+		for (int i = 0; i < state.length; i++)
+			state[i] = i;
+		return state;
+	}
+
+	public int[] step(int[] state, char c) {
+		int[] next = new int[state.length];
+		next[0] = state[0] + 1;
+		for (int i = 1; i < state.length; i++) {
+			int cost = (word.charAt(i - 1) == c) ? 0 : 1;
+			next[i] = Math.min(Math.min(next[i - 1] + 1, state[i] + 1), state[i - 1] + cost);
+		}
+		return next;
+	}
+
+	/**
+	 * Returns the edit distance between the word and the string read.
+	 */
+	public int distance(int[] state) {
+		return state[state.length - 1];
+	}
+
+	public boolean isMatch(int[] state) {
+		return distance(state) <= maxDistance;
+	}
+
+	/**
+	 * Returns whether any continuation of the string read can be accepted.
+	 */
+	public boolean canMatch(int[] state) {
+		for (int d : state)
+			if (d <= maxDistance)
+				return true;
+		return false;
+	}
+}
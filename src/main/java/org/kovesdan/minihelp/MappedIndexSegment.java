@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Index segment that is read directly from a memory-mapped index file. The
+ * file is produced by {@link HelpsetIndexer} and has the following layout,
+ * all integers being big-endian:
+ * 
+ * <pre>
+ * int    magic, version, document count, term count, suffix count
+ * int    offset of each document entry
+ * int    offset of each term entry, in ascending term order
+ * int    term ordinal and offset of each suffix, in ascending suffix order
+ * entry  document: varint length, UTF-8 target, varint token count,
+ *        varint length, deflated UTF-8 text
+ * entry  term: varint length, UTF-8 term, varint posting count, postings
+ * </pre>
+ * 
+ * Each posting is the varint delta to the previous document number, the
+ * varint number of positions and the varint deltas of the positions.
+ */
+class MappedIndexSegment extends IndexSegment {
+	public static final String FILE_NAME = "minihelp.idx";
+	static final int MAGIC = 0x4d484958;
+	static final int VERSION = 3;
+	private static final int HEADER_SIZE = 20;
+
+	private ByteBuffer buffer;
+	private int documentCount;
+	private int termCount;
+	private int suffixCount;
+	private Map<String, Integer> documents = new HashMap<>();
+	private int[] lengths;
+	private long totalLength;
+
+	private MappedIndexSegment(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a Minihelp index file");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported Minihelp index version: " + buffer.getInt(4));
+		documentCount = buffer.getInt(8);
+		termCount = buffer.getInt(12);
+		suffixCount = buffer.getInt(16);
+		lengths = new int[documentCount];
+		for (int i = 0; i < documentCount; i++) {
+			int[] position = { documentOffset(i) };
+			documents.put(readString(position), i);
+			lengths[i] = readVarint(position);
+			totalLength += lengths[i];
+		}
+	}
+
+	public static MappedIndexSegment open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MappedIndexSegment(buffer);
+		}
+	}
+
+	/**
+	 * Opens an index that has already been mapped, for example as an entry
+	 * of a helpset archive.
+	 */
+	static MappedIndexSegment open(ByteBuffer buffer) throws IOException {
+		return new MappedIndexSegment(buffer);
+	}
+
+	public static void write(IndexSegment segment, File file) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			write(segment, out);
+		}
+	}
+
+	public static void write(IndexSegment segment, OutputStream out) throws IOException {
+		int documentCount = segment.getDocumentCount();
+		int termCount = segment.getTermCount();
+		int suffixCount = segment.getSuffixCount();
+		int base = HEADER_SIZE + 4 * (documentCount + termCount) + 8 * suffixCount;
+
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		int[] documentOffsets = new int[documentCount];
+		for (int i = 0; i < documentCount; i++) {
+			documentOffsets[i] = base + entries.size();
+			writeString(entries, segment.getTarget(i));
+			writeVarint(entries, segment.getDocumentLength(i));
+			byte[] text = segment.getCompressedText(i);
+			writeVarint(entries, text.length);
+			entries.write(text);
+		}
+		int[] termOffsets = new int[termCount];
+		for (int i = 0; i < termCount; i++) {
+			termOffsets[i] = base + entries.size();
+			writeString(entries, segment.getTerm(i));
+			List<Posting> postings = segment.getPostings(i);
+			writeVarint(entries, postings.size());
+			int document = 0;
+			for (Posting p : postings) {
+				writeVarint(entries, p.document - document);
+				document = p.document;
+				writeVarint(entries, p.positions.length);
+				int position = 0;
+				for (int pos : p.positions) {
+					writeVarint(entries, pos - position);
+					position = pos;
+				}
+			}
+		}
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(documentCount);
+		data.writeInt(termCount);
+		data.writeInt(suffixCount);
+		for (int offset : documentOffsets)
+			data.writeInt(offset);
+		for (int offset : termOffsets)
+			data.writeInt(offset);
+		for (int i = 0; i < suffixCount; i++)
+			data.writeLong(segment.getSuffix(i));
+		entries.writeTo(data);
+		data.flush();
+	}
+
+	private static void writeString(OutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeVarint(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/*
+	 * The buffer is shared between threads, so it is only accessed with
+	 * absolute reads and the read position is kept by the caller.
+	 */
+	private int readVarint(int[] position) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.get(position[0]++);
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	private byte[] readBytes(int[] position, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = buffer.get(position[0] + i);
+		position[0] += length;
+		return bytes;
+	}
+
+	private String readString(int[] position) {
+		return new String(readBytes(position, readVarint(position)), StandardCharsets.UTF_8);
+	}
+
+	private int documentOffset(int document) {
+		return buffer.getInt(HEADER_SIZE + 4 * document);
+	}
+
+	private int termOffset(int ordinal) {
+		return buffer.getInt(HEADER_SIZE + 4 * (documentCount + ordinal));
+	}
+
+	@Override
+	int getTermCount() {
+		return termCount;
+	}
+
+	@Override
+	String getTerm(int ordinal) {
+		return readString(new int[] { termOffset(ordinal) });
+	}
+
+	@Override
+	int getSuffixCount() {
+		return suffixCount;
+	}
+
+	@Override
+	long getSuffix(int index) {
+		return buffer.getLong(HEADER_SIZE + 4 * (documentCount + termCount) + 8 * index);
+	}
+
+	@Override
+	int getDocumentCount() {
+		return documentCount;
+	}
+
+	@Override
+	String getTarget(int document) {
+		return readString(new int[] { documentOffset(document) });
+	}
+
+	@Override
+	int getDocumentLength(int document) {
+		return lengths[document];
+	}
+
+	@Override
+	long getTotalLength() {
+		return totalLength;
+	}
+
+	@Override
+	int getDocument(String target) {
+		Integer document = documents.get(target);
+		return (document != null) ? document : -1;
+	}
+
+	@Override
+	byte[] getCompressedText(int document) {
+		int[] position = { documentOffset(document) };
+		readString(position);
+		readVarint(position);
+		return readBytes(position, readVarint(position));
+	}
+
+	@Override
+	Iterable<String> getTerms(String from) {
+		int start = from.isEmpty() ? 0 : seek(from);
+		return () -> new Iterator<String>() {
+			private int ordinal = start;
+
+			@Override
+			public boolean hasNext() {
+				return ordinal < termCount;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return getTerm(ordinal++);
+			}
+		};
+	}
+
+	@Override
+	List<Posting> getPostings(String term) {
+		int ordinal = seek(term);
+		if (ordinal == termCount || !getTerm(ordinal).equals(term))
+			return null;
+		return getPostings(ordinal);
+	}
+
+	@Override
+	List<Posting> getPostings(int ordinal) {
+		int[] position = { termOffset(ordinal) };
+		int length = readVarint(position);
+		position[0] += length;
+		int count = readVarint(position);
+		List<Posting> postings = new ArrayList<>(count);
+		int document = 0;
+		for (int i = 0; i < count; i++) {
+			document += readVarint(position);
+			int[] positions = new int[readVarint(position)];
+			int pos = 0;
+			for (int j = 0; j < positions.length; j++) {
+				pos += readVarint(position);
+				positions[j] = pos;
+			}
+			postings.add(new Posting(document, positions));
+		}
+		return postings;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index segment that is built in memory at runtime.
+ */
+class MemoryIndexSegment extends IndexSegment {
+
+	/*
+	 * The terms by their ordinals and the suffix table. They are built when
+	 * first needed after documents have been added.
+	 */
+	private static class Dictionary {
+		final List<String> terms;
+		final List<List<Posting>> postings;
+		final long[] suffixes;
+
+		Dictionary(TreeMap<String, List<Posting>> postings) {
+			this.terms = new ArrayList<>(postings.keySet());
+			this.postings = new ArrayList<>(postings.values());
+			this.suffixes = sortSuffixes(terms);
+		}
+	}
+
+	private List<String> targets = new ArrayList<>();
+	private Map<String, Integer> documents = new HashMap<>();
+	private List<Integer> lengths = new ArrayList<>();
+	private List<byte[]> texts = new ArrayList<>();
+	private long totalLength;
+	private TreeMap<String, List<Posting>> postings = new TreeMap<>();
+	private volatile Dictionary dictionary;
+
+	void addDocument(String target, List<String> tokens, CharSequence text) {
+		if (documents.containsKey(target))
+			return;
+		int document = targets.size();
+		dictionary = null;
+		targets.add(target);
+		documents.put(target, document);
+		lengths.add(tokens.size());
+		texts.add(compress(text));
+		totalLength += tokens.size();
+
+		Map<String, List<Integer>> positions = new HashMap<>();
+		for (int i = 0; i < tokens.size(); i++)
+			positions.computeIfAbsent(tokens.get(i), t -> new ArrayList<>()).add(i);
+		for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+			int[] p = new int[e.getValue().size()];
+			for (int i = 0; i < p.length; i++)
+				p[i] = e.getValue().get(i);
+			postings.computeIfAbsent(e.getKey(), t -> new ArrayList<>()).add(new Posting(document, p));
+		}
+	}
+
+	@Override
+	int getDocumentCount() {
+		return targets.size();
+	}
+
+	@Override
+	String getTarget(int document) {
+		return targets.get(document);
+	}
+
+	@Override
+	int getDocumentLength(int document) {
+		return lengths.get(document);
+	}
+
+	@Override
+	long getTotalLength() {
+		return totalLength;
+	}
+
+	@Override
+	int getDocument(String target) {
+		Integer document = documents.get(target);
+		return (document != null) ? document : -1;
+	}
+
+	@Override
+	byte[] getCompressedText(int document) {
+		return texts.get(document);
+	}
+
+	@Override
+	Iterable<String> getTerms(String from) {
+		return postings.tailMap(from).keySet();
+	}
+
+	@Override
+	List<Posting> getPostings(String term) {
+		return postings.get(term);
+	}
+
+	@Override
+	int getTermCount() {
+		return postings.size();
+	}
+
+	@Override
+	String getTerm(int ordinal) {
+		return getDictionary().terms.get(ordinal);
+	}
+
+	@Override
+	List<Posting> getPostings(int ordinal) {
+		return getDictionary().postings.get(ordinal);
+	}
+
+	@Override
+	int getSuffixCount() {
+		return getDictionary().suffixes.length;
+	}
+
+	@Override
+	long getSuffix(int index) {
+		return getDictionary().suffixes[index];
+	}
+
+	/*
+	 * Documents are only added while the segment is not read, but the
+	 * readers may build the dictionary concurrently.
+	 */
+	private Dictionary getDictionary() {
+		Dictionary d = dictionary;
+		if (d == null) {
+			synchronized (this) {
+				d = dictionary;
+				if (d == null)
+					dictionary = d = new Dictionary(postings);
+			}
+		}
+		return d;
+	}
+}
@@ -29,24 +29,22 @@
 package org.kovesdan.minihelp;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.HeadlessException;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
-import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.regex.Matcher;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 import javax.print.attribute.HashPrintRequestAttributeSet;
@@ -56,26 +54,21 @@ import javax.swing.JFrame;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.event.HyperlinkListener;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
-import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultEditorKit;
 import javax.swing.text.Document;
-import javax.swing.text.Highlighter;
-import javax.swing.text.Highlighter.Highlight;
-import javax.swing.text.Highlighter.HighlightPainter;
-import javax.swing.text.MutableAttributeSet;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyledDocument;
 import javax.swing.text.html.HTMLEditorKit;
 
 import org.kovesdan.minihelp.xml.Configuration;
-import org.kovesdan.minihelp.xml.DocumentMapping;
 import org.kovesdan.minihelp.xml.IndexItem;
 import org.kovesdan.minihelp.xml.TOCItem;
 
@@ -90,14 +83,25 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 	private static final String ERROR_PAGE_HEADER = "<html><head>" + "<title>Error loading page</title></head>"
 			+ "<body><h1>Error loading page</h1><p>";
 	private static final String ERROR_PAGE_FOOTER = "</p></body></html>";
+	private static final int PAGE_CACHE_ENTRIES = 32;
+	private static final long PAGE_CACHE_BYTES = 32 * 1024 * 1024;
+	private static final long PREFETCH_BYTES = 4 * 1024 * 1024;
 
 	protected String homeID = null;
 	protected String currentTarget = null;
-	protected Map<String, URL> mappedContent = new HashMap<>();
-	protected List<TOCItem> tableOfContents = new ArrayList<>();
-	protected List<IndexItem> indexes = new ArrayList<>();
+	private HelpsetContents contents = new HelpsetContents();
+	protected Map<String, URL> mappedContent = contents.mappedContent;
+	protected FullTextIndex fullTextIndex = contents.fullTextIndex;
+	protected List<TOCItem> tableOfContents = contents.tableOfContents;
+	protected List<IndexItem> indexes = contents.indexes;
+	protected SearchEngine searchEngine = new SearchEngine(contents);
 	protected JTextPane htmlPane = new JTextPane();
 	protected HistoryManager<String> history = new HistoryManager<>();
+	protected DocumentCache pageCache = new DocumentCache(PAGE_CACHE_ENTRIES, PAGE_CACHE_BYTES);
+	private PageLoadTask pageLoad;
+	private PagePrefetcher prefetcher = new PagePrefetcher(pageCache, PREFETCH_BYTES);
+	private Pattern highlightPattern;
+	private ViewportHighlighter highlighter;
 	protected MiniHelpToolbar toolbar;
 	protected JPanel contentsPanel;
 	protected MiniHelpSearch searchPanel;
@@ -124,7 +128,7 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 		Messages.keyBoardAction(getRootPane(), e -> navPane.setSelectedIndex(0), "TOC Tab Key", "control T",
 				JComponent.WHEN_IN_FOCUSED_WINDOW);
 		indexPanel = new MiniHelpIndex(indexes, this);
-		searchPanel = new MiniHelpSearch(mappedContent, indexes, tableOfContents, this);
+		searchPanel = new MiniHelpSearch(searchEngine, this);
 		if (showIndexTab)
 			enableIndexPanel();
 		if (showSearchTab)
@@ -141,29 +145,21 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 				JComponent.WHEN_IN_FOCUSED_WINDOW);
 
 		htmlPane.setContentType("text/html");
-		HTMLEditorKit editorKit = new HTMLEditorKit();
+		HTMLEditorKit editorKit = new ZoomableEditorKit();
 		htmlPane.setEditorKit(editorKit);
 		htmlPane.addHyperlinkListener(this);
 		htmlPane.setEditable(false);
 		htmlPane.setComponentPopupMenu(createMenu());
 		htmlPane.addMouseWheelListener(e -> {
 			if (e.isMetaDown() || e.isControlDown()) {
-				int n = e.getWheelRotation();
-				if (n < 0)
-					while (n != 0) {
-						increaseFont();
-						n++;
-					}
-				else
-					while (n != 0) {
-						decreaseFont();
-						n--;
-					}
+				zoom(-e.getWheelRotation());
 				e.consume();
 			}
 		});
 
-		rightPanel.add(htmlPane);
+		JScrollPane htmlScrollPane = new JScrollPane(htmlPane);
+		highlighter = new ViewportHighlighter(htmlPane, htmlScrollPane.getViewport());
+		rightPanel.add(htmlScrollPane);
 
 		this.setJMenuBar(new MiniHelpMenuBar(this));
 		
@@ -178,37 +174,22 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 	}
 
 	public void addHelpset(Configuration configuration, URI baseUri) {
-		// store document mapping
-		for (DocumentMapping m : configuration.getDocumentMappings()) {
-			try {
-				URL url = baseUri.resolve(m.getUrl()).toURL();
-				mappedContent.put(m.getTarget(), url);
-			} catch (MalformedURLException e1) {
-				// TODO: warning; not mapping malformed URLs
-			}
-		}
+		addHelpsets(Collections.singletonList(new Helpset(configuration, baseUri)));
+	}
 
-		// default mapping for documents that are not explicitly mapped
-		for (TOCItem i : configuration.getTOCItems()) {
-			mapTOCItem(i, baseUri);
-		}
-		map(configuration.getHomeID(), baseUri);
-		
-		// copy TOC
-		TOCItem rootTOC = new TOCItem();
-		rootTOC.setText(configuration.getTitle());
-		rootTOC.setTarget(configuration.getHomeID());
-		rootTOC.getTOCItems().addAll(configuration.getTOCItems());
-		tableOfContents.add(rootTOC);
-		
-		// merge indexes
-		for (IndexItem i : configuration.getIndexItems())
-			mergeIndexInto(indexes, i);
-		
+	/*
+	 * Loads the helpsets in parallel, then merges them in their order and
+	 * updates the views once.
+	 */
+	void addHelpsets(List<Helpset> helpsets) {
+		contents.add(helpsets);
+		if (homeID == null)
+			homeID = contents.getHomeID();
+
+		searchEngine.update();
 		contentsTree.updateModel();
 		indexPanel.updateModel();
-		if (homeID == null)
-			homeID = configuration.getHomeID();
+		searchPanel.updateModel();
 		displayHomePage();
 	}
 	
@@ -254,36 +235,6 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 				JComponent.WHEN_IN_FOCUSED_WINDOW);
 	}
 	
-	private void map(String target, URI baseUri) {
-		if (!mappedContent.containsKey(target)) {
-			try {
-				URL url = baseUri.resolve(target + ".html").toURL();
-				File file = new File(url.getFile());
-				if (file.isFile())
-					mappedContent.put(target, url);
-			} catch (MalformedURLException e1) {
-				// TODO: warning; not mapping malformed URLs
-			}
-		}
-	}
-	
-	private void mapTOCItem(TOCItem i, URI baseUri) {
-		map(i.getTarget(), baseUri);
-		for (TOCItem i2 : i.getTOCItems())
-			mapTOCItem(i2, baseUri);
-	}
-	
-	private void mergeIndexInto(List<IndexItem> list, IndexItem item) {
-		Optional<IndexItem> same = indexes.stream().filter(i -> i.getText().equals(item.getText())).findFirst();
-		if (same.isPresent()) {
-			for (IndexItem i : item.getIndexItems())
-				mergeIndexInto(same.get().getIndexItems(), i);
-			same.get().getIndexEntries().addAll(item.getIndexEntries());
-		} else {
-			indexes.add(item);
-		}
-	}
-	
 	protected JPopupMenu createMenu() {
 		JPopupMenu menu = new JPopupMenu();
 
@@ -334,34 +285,167 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 	}
 	
 	public void increaseFont() {
-	    MutableAttributeSet attrs = htmlPane.getInputAttributes();
-	    int size = StyleConstants.getFontSize(attrs);
-	    StyleConstants.setFontSize(attrs, size * 3 / 2);
-	    StyledDocument doc = htmlPane.getStyledDocument();
-	    doc.setCharacterAttributes(0, doc.getLength() + 1, attrs, false);
+		zoom(1);
 	}
-	
+
 	public void decreaseFont() {
-	    MutableAttributeSet attrs = htmlPane.getInputAttributes();
-	    int size = StyleConstants.getFontSize(attrs);
-	    StyleConstants.setFontSize(attrs, size * 2 / 3);
-	    StyledDocument doc = htmlPane.getStyledDocument();
-	    doc.setCharacterAttributes(0, doc.getLength() + 1, attrs, false);
+		zoom(-1);
+	}
+
+	/*
+	 * Scales the fonts of every page by 3/2 for each step. The scale is kept
+	 * by the editor kit, so it also applies to the pages displayed later.
+	 */
+	private void zoom(int steps) {
+		ZoomableEditorKit kit = (ZoomableEditorKit) htmlPane.getEditorKit();
+		kit.setZoom(kit.getZoom() * (float) Math.pow(1.5, steps), htmlPane.getDocument());
 	}
 	
+	/**
+	 * Sets the number of threads that scan the documents in a full-text
+	 * search.
+	 * 
+	 * @param parallelism
+	 *            the number of threads, at least one.
+	 */
+	public void setSearchParallelism(int parallelism) {
+		searchEngine.setParallelism(parallelism);
+	}
+
+	public void addSearchProgressListener(SearchProgressListener listener) {
+		searchPanel.addSearchProgressListener(listener);
+	}
+
+	public void removeSearchProgressListener(SearchProgressListener listener) {
+		searchPanel.removeSearchProgressListener(listener);
+	}
+
 	public void search(String keyword, boolean fullText, boolean caseSensitive, boolean wholeWords) {
 		searchPanel.search(keyword, fullText, caseSensitive, wholeWords);
 	}
+
+	/**
+	 * Returns the engine that searches the helpsets of this window. It can be
+	 * used from any thread, independently of the search tab.
+	 */
+	public SearchEngine getSearchEngine() {
+		return searchEngine;
+	}
+
+	/**
+	 * Returns the number of page displays that were served from the cache of
+	 * parsed documents.
+	 */
+	public long getPageCacheHits() {
+		return pageCache.getHitCount();
+	}
+
+	/**
+	 * Returns the number of page displays that had to read and parse the
+	 * document.
+	 */
+	public long getPageCacheMisses() {
+		return pageCache.getMissCount();
+	}
+
+	/**
+	 * Returns the number of pages that have been loaded into the cache in
+	 * advance, before they were requested.
+	 */
+	public int getPrefetchCount() {
+		return prefetcher.getPrefetchCount();
+	}
 	
+	/**
+	 * Reads and parses a page in the background. The document is only swapped
+	 * into the pane if no other page has been requested in the meantime.
+	 */
+	class PageLoadTask extends SwingWorker<Document, Void> {
+		private final URL url;
+		private final HTMLEditorKit kit = (HTMLEditorKit) htmlPane.getEditorKit();
+
+		PageLoadTask(URL url) {
+			this.url = url;
+		}
+
+		@Override
+		protected Document doInBackground() throws IOException {
+			return pageCache.load(url, kit);
+		}
+
+		@Override
+		protected void done() {
+			if (isCancelled())
+				return;
+			pageLoad = null;
+			htmlPane.setCursor(null);
+			try {
+				swapIn(get(), url);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					showError((IOException) e.getCause());
+				else
+					e.printStackTrace();
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+	/*
+	 * Displays a page. The parsed documents are kept in the page cache, so a
+	 * page that has been displayed recently is swapped into the pane
+	 * without reading or parsing it again. Other pages are loaded in the
+	 * background and a load that is still running is cancelled, just like the
+	 * prefetching of the pages that were likely to follow the previous one.
+	 */
+	private void showPage(URL url) {
+		prefetcher.cancel();
+		if (pageLoad != null) {
+			pageLoad.cancel(true);
+			pageLoad = null;
+			htmlPane.setCursor(null);
+		}
+		Document doc = pageCache.get(url);
+		if (doc != null) {
+			swapIn(doc, url);
+		} else {
+			htmlPane.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+			pageLoad = new PageLoadTask(url);
+			pageLoad.execute();
+		}
+	}
+
+	private void swapIn(Document doc, URL url) {
+		if (doc != htmlPane.getDocument())
+			htmlPane.setDocument(doc);
+		highlighter.setPattern(highlightPattern);
+		String ref = url.getRef();
+		SwingUtilities.invokeLater(() -> {
+			if (ref != null)
+				htmlPane.scrollToReference(ref);
+			else
+				htmlPane.scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+		});
+		prefetcher.prefetch(PagePrefetcher.likelyNextPages(url, doc, tableOfContents, mappedContent),
+				(HTMLEditorKit) htmlPane.getEditorKit());
+	}
+
+	private void showError(IOException e) {
+		e.printStackTrace();
+		StringBuffer sb = new StringBuffer(ERROR_PAGE_HEADER);
+		sb.append(e.getMessage());
+		sb.append(ERROR_PAGE_FOOTER);
+		// the cached documents must not be overwritten
+		htmlPane.setDocument(htmlPane.getEditorKit().createDefaultDocument());
+		htmlPane.setText(sb.toString());
+	}
+
 	private void displayPageForUrlNoHistory(String url) {
 		try {
-			htmlPane.setPage(url);
-		} catch (IOException e) {
-			e.printStackTrace();
-			StringBuffer sb = new StringBuffer(ERROR_PAGE_HEADER);
-			sb.append(e.getMessage());
-			sb.append(ERROR_PAGE_FOOTER);
-			htmlPane.setText(sb.toString());
+			removeHighlights();
+			showPage(new URL(url));
+		} catch (MalformedURLException e) {
+			showError(e);
 		}
 	}
 
@@ -380,18 +464,10 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 	}
 
 	protected void displayPageForUrl(URL url) {
-		try {
-			history.navigatedTo(url.toString());
-			htmlPane.setPage(url.toString());
-			removeHighlights();
-			toolbar.updateActiveButtons();
-		} catch (IOException e) {
-			e.printStackTrace();
-			StringBuffer sb = new StringBuffer(ERROR_PAGE_HEADER);
-			sb.append(e.getMessage());
-			sb.append(ERROR_PAGE_FOOTER);
-			htmlPane.setText(sb.toString());
-		}
+		history.navigatedTo(url.toString());
+		removeHighlights();
+		showPage(url);
+		toolbar.updateActiveButtons();
 	}
 
 	public void displayPageForTarget(String target) {
@@ -453,25 +529,18 @@ public class MiniHelp extends JFrame implements HyperlinkListener {
 			displayPageForUrl(e.getURL());
 	}
 
+	/**
+	 * Highlights the matches of a pattern in the displayed page. If a page is
+	 * being loaded, the matches are highlighted when it is displayed.
+	 */
 	public void highlight(Pattern pattern) {
-		removeHighlights();
-		try {
-			HighlightPainter highlightPainter = new MiniHelpHighlightPainter(Color.YELLOW);
-			Highlighter highlighter = htmlPane.getHighlighter();
-			Document doc = htmlPane.getDocument();
-			Matcher matcher = pattern.matcher(doc.getText(0, doc.getLength()));
-
-			while (matcher.find())
-				highlighter.addHighlight(matcher.start(), matcher.end(), highlightPainter);
-
-		} catch (BadLocationException e) {
-		}
+		highlightPattern = pattern;
+		if (pageLoad == null)
+			highlighter.setPattern(pattern);
 	}
 
 	public void removeHighlights() {
-		Highlighter highlighter = htmlPane.getHighlighter();
-		for (Highlight h : highlighter.getHighlights())
-			if (h.getPainter() instanceof MiniHelpHighlightPainter)
-				highlighter.removeHighlight(h);
+		highlightPattern = null;
+		highlighter.setPattern(null);
 	}
 }
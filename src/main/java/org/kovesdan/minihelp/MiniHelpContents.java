@@ -33,8 +33,7 @@ import java.util.List;
 import javax.swing.JTree;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 
 import org.kovesdan.minihelp.xml.TOCItem;
@@ -43,46 +42,45 @@ class MiniHelpContents extends JTree implements TreeSelectionListener {
 	private static final long serialVersionUID = 1L;
 
 	private MiniHelp mainApp;
-	private List<TOCItem> tableOfContents;
-
-	private void createLeaves(DefaultMutableTreeNode parent, List<TOCItem> items) {
-		for (TOCItem i : items) {
-			DefaultMutableTreeNode entry = (i.getTarget() != null && !i.getTarget().isEmpty())
-					? new DefaultMutableTreeNode(new LinkInfo(i.getText(), i.getTarget()))
-					: new DefaultMutableTreeNode(i.getText());
-			parent.add(entry);
-			if (i.getTOCItems() != null && !i.getTOCItems().isEmpty())
-				createLeaves(entry, i.getTOCItems());
-		}
-	}
+	private ContentsTreeModel model;
 
 	public MiniHelpContents(List<TOCItem> tableOfContents, MiniHelp mainApp) {
 		this.mainApp = mainApp;
-		this.tableOfContents = tableOfContents;
+		this.model = new ContentsTreeModel("Documentation", tableOfContents);
 		this.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+		setModel(model);
+		setShowsRootHandles(true);
 		addTreeSelectionListener(this);
-		updateModel();
 	}
 	
+	/**
+	 * Shows the helpsets that have been added to the table of contents. The
+	 * expanded nodes and the selection are kept.
+	 */
 	public void updateModel() {
-		DefaultMutableTreeNode top = new DefaultMutableTreeNode("Documentation");
-		DefaultTreeModel model = new DefaultTreeModel(top);
-		this.setModel(model);
-		setShowsRootHandles(true);
-		createLeaves(top, tableOfContents);
+		boolean wasEmpty = model.getChildCount(model.getRoot()) == 0;
+		model.helpsetsAdded();
+		if (wasEmpty)
+			expandPath(new TreePath(model.getRoot()));
+	}
+
+	@Override
+	public String convertValueToText(Object value, boolean selected, boolean expanded, boolean leaf, int row,
+			boolean hasFocus) {
+		if (value instanceof TOCItem)
+			return ((TOCItem) value).getText();
+		return super.convertValueToText(value, selected, expanded, leaf, row, hasFocus);
 	}
 
 	@Override
 	public void valueChanged(TreeSelectionEvent event) {
-		DefaultMutableTreeNode node = (DefaultMutableTreeNode) getLastSelectedPathComponent();
+		Object node = getLastSelectedPathComponent();
 
-		if (node == null)
+		if (!(node instanceof TOCItem))
 			return;
 
-		Object nodeInfo = node.getUserObject();
-		if (nodeInfo instanceof LinkInfo) {
-			LinkInfo linkInfo = (LinkInfo) nodeInfo;
-			mainApp.displayPageForTarget(linkInfo.getTarget());
-		}
+		TOCItem item = (TOCItem) node;
+		if (item.getTarget() != null && !item.getTarget().isEmpty())
+			mainApp.displayPageForTarget(item.getTarget());
 	}
 }
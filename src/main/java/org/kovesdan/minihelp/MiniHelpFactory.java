@@ -28,30 +28,26 @@
  */
 package org.kovesdan.minihelp;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URI;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.kovesdan.minihelp.xml.Configuration;
 
-class Helpset {
-	Configuration configuration;
-	URI baseUri;
-
-	public Helpset(Configuration configuration, URI baseUri) {
-		super();
-		this.configuration = configuration;
-		this.baseUri = baseUri;
-	}
-}
-
 public class MiniHelpFactory {
 	private Locale locale = Locale.getDefault();
 	private String mainTitle = "Documentation";
 	private boolean showIndexTab = true;
 	private boolean showSearchTab = true;
+	private int searchParallelism = Runtime.getRuntime().availableProcessors();
 	private List<Helpset> helpsets = new ArrayList<>();
+	private List<HelpsetLoadListener> loadListeners = new CopyOnWriteArrayList<>();
 
 	public void setLocale(Locale locale) {
 		this.locale = locale;
@@ -69,15 +65,104 @@ public class MiniHelpFactory {
 		this.showSearchTab = showSearchTab;
 	}
 
+	public void setSearchParallelism(int searchParallelism) {
+		this.searchParallelism = searchParallelism;
+	}
+
 	public void addHelpset(Configuration configuration, URI baseUri) {
 		helpsets.add(new Helpset(configuration, baseUri));
 	}
 
+	/**
+	 * Adds a helpset whose configuration is parsed when the window is
+	 * created, in parallel with the other helpsets.
+	 * 
+	 * @param configuration
+	 *            the URL of the configuration file.
+	 * @param baseUri
+	 *            the URI that the documents are resolved against.
+	 */
+	public void addHelpset(URL configuration, URI baseUri) {
+		helpsets.add(new Helpset(configuration, baseUri));
+	}
+
+	/**
+	 * Adds a helpset that is packed into a single zip or jar file by
+	 * {@link HelpsetArchiver}. The archive is opened when the window is
+	 * created, in parallel with the other helpsets.
+	 * 
+	 * @param archive
+	 *            the archive file.
+	 */
+	public void addHelpset(File archive) {
+		helpsets.add(new Helpset(archive));
+	}
+
+	public void addHelpsetLoadListener(HelpsetLoadListener listener) {
+		loadListeners.add(listener);
+	}
+
+	public void removeHelpsetLoadListener(HelpsetLoadListener listener) {
+		loadListeners.remove(listener);
+	}
+
+	/**
+	 * Creates the help window with all the helpsets added. The helpsets are
+	 * loaded in parallel and the window is updated once they are all loaded.
+	 */
 	public MiniHelp getMiniHelp() {
 		Messages.setLocale(locale);
 		MiniHelp help = new MiniHelp(mainTitle, showIndexTab, showSearchTab);
-		for (Helpset hs : helpsets)
-			help.addHelpset(hs.configuration, hs.baseUri);
+		help.setSearchParallelism(searchParallelism);
+		help.addHelpsets(helpsets);
+		fireHelpsetsLoaded();
 		return help;
 	}
+
+	/**
+	 * Creates a search engine for all the helpsets added, without a window.
+	 * The helpsets are loaded in parallel. The engine can be used where there
+	 * is no display, for example in a server.
+	 */
+	public SearchEngine getSearchEngine() {
+		return createSearchEngine(loadContents());
+	}
+
+	/**
+	 * Creates a server that serves all the helpsets added to web browsers.
+	 * The helpsets are loaded in parallel and the pages that have no prebuilt
+	 * full-text index are indexed; the server is started by
+	 * {@link MiniHelpServer#start()}.
+	 * 
+	 * @param address
+	 *            the address to listen on.
+	 * @throws IOException
+	 *             if the address cannot be bound.
+	 */
+	public MiniHelpServer getMiniHelpServer(InetSocketAddress address) throws IOException {
+		HelpsetContents contents = loadContents();
+		SearchEngine engine = createSearchEngine(contents);
+		engine.indexAll();
+		return new MiniHelpServer(contents, engine, address);
+	}
+
+	private HelpsetContents loadContents() {
+		HelpsetContents contents = new HelpsetContents();
+		contents.add(helpsets);
+		fireHelpsetsLoaded();
+		return contents;
+	}
+
+	private SearchEngine createSearchEngine(HelpsetContents contents) {
+		SearchEngine engine = new SearchEngine(contents);
+		engine.setParallelism(searchParallelism);
+		return engine;
+	}
+
+	private void fireHelpsetsLoaded() {
+		for (Helpset hs : helpsets)
+			if (hs.configuration != null)
+				for (HelpsetLoadListener l : loadListeners)
+					l.helpsetLoaded(hs.configuration.getTitle(), hs.baseUri, hs.loadTime / 1000000);
+	}
 }
@@ -28,6 +28,7 @@
  */
 package org.kovesdan.minihelp;
 
+import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.GridLayout;
 import java.util.ArrayList;
@@ -40,8 +41,10 @@ import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.ListCellRenderer;
-import javax.swing.ListModel;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import org.kovesdan.minihelp.xml.IndexEntry;
 import org.kovesdan.minihelp.xml.IndexItem;
@@ -53,23 +56,10 @@ class MiniHelpIndex extends JPanel {
 	private MiniHelpIndexListModel<LinkInfo> resultModel;
 	protected DefaultListCellRenderer defaultRenderer = new DefaultListCellRenderer();
 
-	private List<IndexItem> index;
-	private List<IndexItem> flattenedIndex;
+	private JTextField filterField;
 
-	private void flattenList(List<IndexItem> index, int level) {
-		Collections.sort(index, (o1, o2) -> o1.getText().compareTo(o2.getText()));
-		for (IndexItem item : index) {
-			StringBuffer sb = new StringBuffer();
-			for (int i = 0; i < level; i++)
-				sb.append("  ");
-			sb.append(item.getText());
-			IndexItem copy = new IndexItem();
-			copy.setText(sb.toString());
-			copy.setTarget(item.getTarget());
-			flattenedIndex.add(copy);
-			flattenList(item.getIndexItems(), level + 1);
-		}
-	}
+	private List<IndexItem> index;
+	private IndexListModel indexModel = new IndexListModel();
 
 	private void updateHtmlPaneWithIndexterm(MiniHelp mainApp) {
 		int index = indexList.getSelectionModel().getMinSelectionIndex();
@@ -96,7 +86,7 @@ class MiniHelpIndex extends JPanel {
 	public MiniHelpIndex(List<IndexItem> index, MiniHelp mainApp) {
 		super(new GridLayout(2, 1));
 		this.index = index;
-		indexList = new JList<>();
+		indexList = new JList<>(indexModel);
 		indexList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		JScrollPane listScroller = new JScrollPane(indexList);
 		indexList.setCellRenderer(new ListCellRenderer<IndexItem>() {
@@ -106,13 +96,43 @@ class MiniHelpIndex extends JPanel {
 					boolean isSelected, boolean cellHasFocus) {
 				JLabel renderer = (JLabel) defaultRenderer.getListCellRendererComponent(list, value, index, isSelected,
 						cellHasFocus);
-				renderer.setText(value.getText());
+				StringBuilder sb = new StringBuilder();
+				for (int i = 0; i < indexModel.getDepth(index); i++)
+					sb.append("  ");
+				sb.append(value.getText());
+				renderer.setText(sb.toString());
 				return renderer;
 			}
 		});
 		indexList.addListSelectionListener(e -> updateHtmlPaneWithIndexterm(mainApp));
 		indexList.addFocusListener(new FocusGainedListener(() -> updateHtmlPaneWithIndexterm(mainApp)));
-		add(listScroller);
+
+		filterField = new JTextField();
+		filterField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				filter();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				filter();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+			}
+		});
+		filterField.addActionListener(e -> {
+			if (indexModel.getSize() > 0) {
+				indexList.setSelectedIndex(0);
+				indexList.requestFocusInWindow();
+			}
+		});
+		JPanel listPanel = new JPanel(new BorderLayout());
+		listPanel.add(filterField, BorderLayout.NORTH);
+		listPanel.add(listScroller, BorderLayout.CENTER);
+		add(listPanel);
 		resultModel = new MiniHelpIndexListModel<>(Collections.emptyList());
 		resultList = new JList<>(resultModel);
 		JScrollPane resultScroller = new JScrollPane(resultList);
@@ -122,10 +142,20 @@ class MiniHelpIndex extends JPanel {
 		updateModel();
 	}
 
+	/*
+	 * Shows the terms that start with the text of the filter field.
+	 */
+	private void filter() {
+		indexList.clearSelection();
+		indexModel.filter(filterField.getText().trim());
+		if (indexModel.getSize() > 0)
+			indexList.ensureIndexIsVisible(0);
+	}
+
 	public void updateModel() {
-		flattenedIndex = new ArrayList<>();
-		flattenList(index, 0);
-		ListModel<IndexItem> listModel = new MiniHelpIndexListModel<>(flattenedIndex);
-		indexList.setModel(listModel);
+		indexList.clearSelection();
+		indexModel.setIndex(index);
+		if (!filterField.getText().trim().isEmpty())
+			indexModel.filter(filterField.getText().trim());
 	}
 }
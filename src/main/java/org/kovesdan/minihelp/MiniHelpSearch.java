@@ -28,69 +28,74 @@
  */
 package org.kovesdan.minihelp;
 
+import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.ItemEvent;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.AbstractAction;
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.GroupLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
+import javax.swing.ListCellRenderer;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
-
-import org.kovesdan.minihelp.xml.IndexEntry;
-import org.kovesdan.minihelp.xml.IndexItem;
-import org.kovesdan.minihelp.xml.TOCItem;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 class MiniHelpSearch extends JPanel implements FocusListener {
 	private static final long serialVersionUID = 1L;
-	private JList<LinkInfo> resultList;
-	private List<IndexItem> index;
-	private List<TOCItem> tocItems;
-	private Map<String, URL> mappedContent;
-	private MiniHelpIndexListModel<LinkInfo> resultModel;
+	private static final int SEARCH_DELAY = 250;
+	private static final int PROGRESS_FRAME_RATE = 25;
+	private JList<SearchResult> resultList;
+	private SearchEngine searchEngine;
+	private MiniHelpIndexListModel<SearchResult> resultModel;
 	protected DefaultListCellRenderer defaultRenderer = new DefaultListCellRenderer();
 
-	private boolean caseSensitive = false;
 	private JCheckBox caseSensitiveCheckBox;
-	private boolean wholeWords = false;
 	private JCheckBox wholeWordCheckBox;
-	private boolean fullText = false;
 	private JCheckBox fullTextCheckBox;
-	private boolean regex = false;
 	private JCheckBox regexCheckBox;
-	private TreeSet<LinkInfo> resultSet = new TreeSet<>();
+	private JCheckBox fuzzyCheckBox;
 	private JTextField searchField;
 	private JProgressBar searchProgressBar;
 	private JButton searchButton;
-	private Pattern pattern;
+	private Timer searchTimer;
+	private SearchTask searchTask;
+	private SearchResults lastResults;
+	private Timer progressTimer = new Timer(1000 / PROGRESS_FRAME_RATE, e -> sampleProgress());
+	private int reportedValue = -1;
+	private int reportedMaximum = -1;
+	private List<SearchProgressListener> progressListeners = new CopyOnWriteArrayList<>();
+	private final ExecutorService snippetExecutor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "MiniHelp snippets");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Set<String> pendingSnippets = new HashSet<>();
 
 
 	class SearchAction extends AbstractAction {
@@ -102,137 +107,149 @@ class MiniHelpSearch extends JPanel implements FocusListener {
 		}
 	}
 	
-	class SearchTask extends SwingWorker<Void, Void> {
+	/*
+	 * Runs the query in the search engine. The query is built from the form
+	 * on the event dispatch thread, so the worker does not touch the form.
+	 */
+	class SearchTask extends SwingWorker<SearchResults, Void> {
+		private final SearchQuery query;
+		private final SearchResults previous;
+		private SearchProgress progress = new SearchProgress();
+
+		SearchTask(SearchQuery query, SearchResults previous) {
+			this.query = query;
+			this.previous = previous;
+		}
 
 		@Override
-		public Void doInBackground() {
-			int progress = 0;
-			progress += index.size();
-			progress += tocItems.size();
-			if (fullText)
-				progress += mappedContent.size();
-			final int pm = progress;
-			SwingUtilities.invokeLater(() -> searchProgressBar.setMaximum(pm));
-
-			progress = 0;
-			for (IndexItem i : index) {
-				searchIndexItem(i, searchField.getText());
-				progress++;
-				final int fp = progress;
-				SwingUtilities.invokeLater(() -> searchProgressBar.setValue(fp));
-			}
-			for (TOCItem i : tocItems) {
-				searchTOCItem(i, searchField.getText());
-				progress++;
-				final int fp = progress;
-				SwingUtilities.invokeLater(() -> searchProgressBar.setValue(fp));
+		public SearchResults doInBackground() {
+			return searchEngine.search(query, previous, progress);
+		}
+
+		@Override
+		public void done() {
+			if (isCancelled())
+				return;
+			progressTimer.stop();
+			reportProgress(progress.getMaximum(), progress.getMaximum());
+			searchProgressBar.setValue(0);
+			setCursor(null);
+			try {
+				lastResults = get();
+			} catch (InterruptedException | ExecutionException e) {
+				// the old results would look like the results of the query
+				e.printStackTrace();
+				lastResults = null;
+				resultModel.setData(Collections.emptyList());
+				searchProgressBar.setString(Messages.get("Search failed"));
+				return;
 			}
-			if (fullText)
-				for (Entry<String, URL> e : mappedContent.entrySet()) {
-					searchDocument(e.getKey(), e.getValue(), searchField.getText());
-					progress++;
-					final int fp = progress;
-					SwingUtilities.invokeLater(() -> searchProgressBar.setValue(fp));
-				}
-
-			return null;
+			pendingSnippets = new HashSet<>();
+			resultModel.setData(lastResults.getResults());
+			resultList.clearSelection();
 		}
- 
-        @Override
-        public void done() {
-            Toolkit.getDefaultToolkit().beep();
-            searchProgressBar.setValue(0);
-            searchButton.setEnabled(true);
-			searchField.setEditable(true);
-			searchField.setEnabled(true);
-            setCursor(null);
-    		resultModel.setData(new ArrayList<>(resultSet));
-    		resultList.clearSelection();
-        }
-    }
-
-	private boolean matches(String string) {
-		if (pattern == null)
-			return false;
-		return pattern.matcher(string).find();
 	}
-	
-	private void compilePattern(String keyword) {
-		int flags = 0;
-		if (!caseSensitive)
-			flags += Pattern.CASE_INSENSITIVE;
-		
-		if (!regex && !wholeWords)
-			flags += Pattern.LITERAL;
-		
-		String pat = keyword;
-		if (wholeWords) {
-			if (!keyword.startsWith(".*\\b"))
-				pat = ".*\\b" + pat;
-			if (!keyword.endsWith("\\b.*"))
-				pat = pat + "\\b.*";
-		} 
-
-		pattern = Pattern.compile(pat, flags);
+
+	/*
+	 * Samples the progress of the running search. Called from a timer so that
+	 * the progress bar and the listeners are updated at most at the frame rate
+	 * no matter how many items are searched.
+	 */
+	private void sampleProgress() {
+		if (searchTask == null)
+			return;
+		reportProgress(searchTask.progress.getValue(), searchTask.progress.getMaximum());
 	}
 
-	private void searchIndexItem(IndexItem item, String keyword) {
-		if (matches(item.getText()) && item.getTarget() != null)
-			resultSet.add(new LinkInfo(item.getText().trim(), item.getTarget()));
+	private void reportProgress(int value, int maximum) {
+		if (value == reportedValue && maximum == reportedMaximum)
+			return;
+		reportedValue = value;
+		reportedMaximum = maximum;
+		searchProgressBar.setMaximum(maximum);
+		searchProgressBar.setValue(value);
+		for (SearchProgressListener l : progressListeners)
+			l.searchProgress(value, maximum);
+	}
 
-		for (IndexItem i : item.getIndexItems())
-			searchIndexItem(i, keyword);
-		for (IndexEntry e : item.getIndexEntries())
-			searchIndexEntry(e, keyword);
+	/*
+	 * Computes the snippet of a result in the background, as it may have to
+	 * inflate the text of the page and match the pattern in it, and repaints
+	 * the results when it is ready. Called from the renderer, which only
+	 * shows the snippets that are known.
+	 */
+	private void computeSnippet(SearchResults results, String target) {
+		if (!pendingSnippets.add(target))
+			return;
+		Set<String> pending = pendingSnippets;
+		snippetExecutor.execute(() -> {
+			results.getSnippet(target);
+			SwingUtilities.invokeLater(() -> {
+				pending.remove(target);
+				if (results == lastResults)
+					resultList.repaint();
+			});
+		});
 	}
 
-	private void searchIndexEntry(IndexEntry entry, String keyword) {
-		if (matches(entry.getText()))
-			resultSet.add(new LinkInfo(entry.getText(), entry.getTarget()));
+	public void addSearchProgressListener(SearchProgressListener listener) {
+		progressListeners.add(listener);
 	}
 
-	private void searchTOCItem(TOCItem item, String keyword) {
-		if (matches(item.getText()))
-			resultSet.add(new LinkInfo(item.getText(), item.getTarget()));
-		for (TOCItem i : item.getTOCItems())
-			searchTOCItem(i, keyword);
+	public void removeSearchProgressListener(SearchProgressListener listener) {
+		progressListeners.remove(listener);
 	}
-	
-	private void searchDocument(String target, URL url, String keyword) {
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()))) {
-			boolean matches = false;
-
-			String line;
-			while ((line = in.readLine()) != null) {
-				if (matches(line.replaceAll("<[^>]+>", ""))) {
-					matches = true;
-					break;
-				}
-			}
-			if (matches)
-				resultSet.add(new LinkInfo(new File(url.getFile()).getName(), target));
-		} catch (IOException e) {
-		}
+
+	private SearchQuery getQuery(String keyword) {
+		return new SearchQuery(keyword).withFullText(fullTextCheckBox.isSelected())
+				.withCaseSensitive(caseSensitiveCheckBox.isSelected()).withWholeWords(wholeWordCheckBox.isSelected())
+				.withRegex(regexCheckBox.isSelected()).withFuzzy(fuzzyCheckBox.isSelected());
 	}
-	
+
 	private void initSearch(String keyword) {
-		searchField.setText(keyword);
-		resultSet.clear();
-		searchButton.setEnabled(false);
-		searchField.setEditable(false);
-		searchField.setEnabled(false);
-    	setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-    	compilePattern(searchField.getText());
-    	SearchTask searchTask = new SearchTask();
-    	searchTask.execute();
+		if (!searchField.getText().equals(keyword))
+			searchField.setText(keyword);
+		searchTimer.stop();
+		if (searchTask != null)
+			searchTask.cancel(true);
+		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		searchProgressBar.setString(null);
+		searchTask = new SearchTask(getQuery(keyword), lastResults);
+		searchTask.execute();
+		reportedValue = -1;
+		progressTimer.restart();
 	}
-	
+
+	private void searchAsYouType() {
+		String keyword = searchField.getText();
+		if (keyword.isEmpty()) {
+			if (searchTask != null)
+				searchTask.cancel(true);
+			progressTimer.stop();
+			setCursor(null);
+			searchProgressBar.setValue(0);
+			searchProgressBar.setString(null);
+			lastResults = null;
+			resultModel.setData(Collections.emptyList());
+			return;
+		}
+		if (lastResults != null && searchTask != null && lastResults.getQuery() == searchTask.query
+				&& searchTask.query.equals(getQuery(keyword)))
+			return;
+		initSearch(keyword);
+	}
+
+	/**
+	 * Forgets the previous results so that the next search is not narrowed
+	 * down from them. Must be called when helpsets are added.
+	 */
+	public void updateModel() {
+		lastResults = null;
+	}
+
 	public void search(String keyword, boolean fullText, boolean caseSensitive, boolean wholeWords) {
-		this.fullText = fullText;
 		fullTextCheckBox.setSelected(fullText);
-		this.caseSensitive = caseSensitive;
 		caseSensitiveCheckBox.setSelected(caseSensitive);
-		this.wholeWords = wholeWords;
 		wholeWordCheckBox.setSelected(wholeWords);
 		initSearch(keyword);
 	}
@@ -244,43 +261,62 @@ class MiniHelpSearch extends JPanel implements FocusListener {
 		mainApp.displayPageForTarget(resultModel.getElementAt(index).getTarget());
 	}
 
-	public MiniHelpSearch(Map<String, URL> mappedContent, List<IndexItem> index, List<TOCItem> contents,
-			MiniHelp mainApp) {
+	public MiniHelpSearch(SearchEngine searchEngine, MiniHelp mainApp) {
 		super(new GridBagLayout());
-		this.mappedContent = mappedContent;
-		this.index = index;
-		this.tocItems = contents;
+		this.searchEngine = searchEngine;
 
 		searchField = new JTextField();
 		String enter = "ENTER";
 		KeyStroke enterKeystroke = KeyStroke.getKeyStroke(enter);
 		searchField.getInputMap().put(enterKeystroke, enter);
 		searchField.getActionMap().put(enter, new SearchAction());
+		searchTimer = new Timer(SEARCH_DELAY, e -> searchAsYouType());
+		searchTimer.setRepeats(false);
+		searchField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				searchTimer.restart();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				searchTimer.restart();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+			}
+		});
 
 		caseSensitiveCheckBox = new JCheckBox(Messages.get("Case sensitive"));
 		caseSensitiveCheckBox.setMnemonic(Messages.mnemonic("Case sensitive Mnemonic", "C"));
-		caseSensitiveCheckBox.addItemListener(e -> caseSensitive = e.getStateChange() == ItemEvent.SELECTED);
+		caseSensitiveCheckBox.addItemListener(e -> searchTimer.restart());
 		wholeWordCheckBox = new JCheckBox(Messages.get("Whole word"));
 		wholeWordCheckBox.addItemListener(e -> {
-			wholeWords = e.getStateChange() == ItemEvent.SELECTED;
-			if (wholeWords) {
-				regex = true;
+			if (e.getStateChange() == ItemEvent.SELECTED)
 				regexCheckBox.setSelected(true);
-			}
+			searchTimer.restart();
 		});
 		wholeWordCheckBox.setMnemonic(Messages.mnemonic("Whole word Mnemonic", "W"));
 		fullTextCheckBox = new JCheckBox(Messages.get("Search in documents"));
-		fullTextCheckBox.addItemListener(e -> fullText = e.getStateChange() == ItemEvent.SELECTED);
+		fullTextCheckBox.addItemListener(e -> searchTimer.restart());
 		fullTextCheckBox.setMnemonic(Messages.mnemonic("Search in documents Mnemonic", "D"));
 		regexCheckBox = new JCheckBox(Messages.get("Regular expression"));
 		regexCheckBox.addItemListener(e -> {
-			regex = e.getStateChange() == ItemEvent.SELECTED;
-			if (!regex) {
-				wholeWords = false;
+			if (e.getStateChange() != ItemEvent.SELECTED)
 				wholeWordCheckBox.setSelected(false);
-			}
+			else
+				fuzzyCheckBox.setSelected(false);
+			searchTimer.restart();
 		});
 		regexCheckBox.setMnemonic(Messages.mnemonic("Regular expression Mnemonic", "R"));
+		fuzzyCheckBox = new JCheckBox(Messages.get("Fuzzy search"));
+		fuzzyCheckBox.addItemListener(e -> {
+			if (e.getStateChange() == ItemEvent.SELECTED)
+				regexCheckBox.setSelected(false);
+			searchTimer.restart();
+		});
+		fuzzyCheckBox.setMnemonic(Messages.mnemonic("Fuzzy search Mnemonic", "Z"));
 		searchButton = new JButton(Messages.get("Search"));
 		searchButton.addActionListener(e -> initSearch(searchField.getText()));
 		searchProgressBar = new JProgressBar();
@@ -296,7 +332,8 @@ class MiniHelpSearch extends JPanel implements FocusListener {
 						.addGroup(searchFormLayout.createSequentialGroup()
 								.addGroup(searchFormLayout.createParallelGroup()
 										.addComponent(caseSensitiveCheckBox)
-										.addComponent(fullTextCheckBox))
+										.addComponent(fullTextCheckBox)
+										.addComponent(fuzzyCheckBox))
 								.addGroup(searchFormLayout.createParallelGroup()
 										.addComponent(wholeWordCheckBox)
 										.addComponent(regexCheckBox))))
@@ -312,16 +349,36 @@ class MiniHelpSearch extends JPanel implements FocusListener {
 						.addGroup(searchFormLayout.createParallelGroup()
 								.addComponent(fullTextCheckBox)
 								.addComponent(regexCheckBox))
+						.addComponent(fuzzyCheckBox)
 						.addComponent(searchProgressBar));
 		searchFormPanel.setLayout(searchFormLayout);
 
 		resultModel = new MiniHelpIndexListModel<>(Collections.emptyList());
 		resultList = new JList<>(resultModel);
 		resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		resultList.setCellRenderer(new ListCellRenderer<SearchResult>() {
+
+			@Override
+			public Component getListCellRendererComponent(JList<? extends SearchResult> list, SearchResult value,
+					int index, boolean isSelected, boolean cellHasFocus) {
+				JLabel renderer = (JLabel) defaultRenderer.getListCellRendererComponent(list, value, index, isSelected,
+						cellHasFocus);
+				Snippet snippet = null;
+				if (lastResults != null && lastResults.hasSnippet(value.getTarget()))
+					snippet = lastResults.getSnippet(value.getTarget());
+				else if (lastResults != null)
+					computeSnippet(lastResults, value.getTarget());
+				renderer.setText("<html>" + Snippet.escape(value.getLabel()) + "<br><font size=\"-2\">"
+						+ ((snippet != null) ? snippet.toHtml() : "&nbsp;") + "</font></html>");
+				return renderer;
+			}
+		});
+		// only the visible cells are rendered with a fixed cell height
+		resultList.setPrototypeCellValue(new SearchResult("Prototype", null, 0));
 		JScrollPane resultScroller = new JScrollPane(resultList);
 		resultList.addListSelectionListener(e -> {
 			updateHtmlPane(mainApp);
-			mainApp.highlight(pattern);
+			mainApp.highlight((lastResults != null) ? lastResults.getHighlightPattern() : null);
 		});
 		resultList.addFocusListener(new FocusGainedListener(() -> updateHtmlPane(mainApp)));
 
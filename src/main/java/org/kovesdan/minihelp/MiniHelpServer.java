@@ -0,0 +1,644 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.kovesdan.minihelp.xml.IndexEntry;
+import org.kovesdan.minihelp.xml.IndexItem;
+import org.kovesdan.minihelp.xml.TOCItem;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the helpsets to web browsers over HTTP, without the help window. The
+ * command-line arguments are the paths to the configuration files or helpset
+ * archives, optionally preceded by <code>-p</code> and the port to listen on.
+ * <p>
+ * The pages and the files next to them, like images and style sheets, are
+ * served with validators and compressed when the browser accepts it. The
+ * table of contents, the index and the search are served as JSON:
+ * <ul>
+ * <li><code>/pages/</code><i>target</i> redirects to the page of a target,</li>
+ * <li><code>/api/toc</code> returns the table of contents,</li>
+ * <li><code>/api/index</code> returns the merged index,</li>
+ * <li><code>/api/search?q=</code><i>keyword</i> returns the results of a
+ * search. The <code>fullText</code>, <code>caseSensitive</code>,
+ * <code>wholeWords</code>, <code>regex</code> and <code>fuzzy</code>
+ * parameters set the options and <code>limit</code> the number of
+ * results.</li>
+ * </ul>
+ * The requests are handled by a pool of threads that share one search engine.
+ * The pages are indexed before the server starts, so the searches only read
+ * the index. A search that takes longer than the search timeout is stopped and
+ * answered with 503 Service Unavailable.
+ * 
+ * @author Gábor Kövesdán
+ */
+public class MiniHelpServer {
+	public static final int DEFAULT_PORT = 8080;
+	private static final int BACKLOG = 1024;
+	private static final int FILE_CACHE_ENTRIES = 512;
+	private static final int MIN_COMPRESSED_SIZE = 256;
+	private static final int DEFAULT_RESULTS = 50;
+	private static final long DEFAULT_SEARCH_TIMEOUT = 10000;
+	private static final int STOP_DELAY = 5;
+	private static final String JSON_TYPE = "application/json; charset=UTF-8";
+	private static final String FILE_CACHE_CONTROL = "public, max-age=300";
+	private static final String API_CACHE_CONTROL = "no-cache";
+	private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME
+			.withZone(ZoneOffset.UTC);
+
+	private final HelpsetContents contents;
+	private final SearchEngine searchEngine;
+	private final List<String> baseUris = new ArrayList<>();
+	private final Resource toc;
+	private final Resource index;
+	private final Map<String, Resource> fileCache = Collections
+			.synchronizedMap(new LinkedHashMap<String, Resource>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Resource> eldest) {
+					return size() > FILE_CACHE_ENTRIES;
+				}
+			});
+	private final HttpServer server;
+	private ExecutorService executor;
+	private ExecutorService searchExecutor;
+	private long searchTimeout = DEFAULT_SEARCH_TIMEOUT;
+	private int threads = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+
+	/*
+	 * A response body with its validators. The compressed body is only
+	 * created when a browser first asks for it.
+	 */
+	private static class Resource {
+		final String type;
+		final byte[] body;
+		final String etag;
+		final long lastModified;
+		final String cacheControl;
+		private volatile byte[] compressed;
+
+		Resource(String type, byte[] body, String etag, long lastModified, String cacheControl) {
+			this.type = type;
+			this.body = body;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.cacheControl = cacheControl;
+		}
+
+		boolean isCompressible() {
+			return body.length >= MIN_COMPRESSED_SIZE && (type.startsWith("text/") || type.contains("json")
+					|| type.contains("xml") || type.contains("javascript"));
+		}
+
+		byte[] getCompressed() throws IOException {
+			byte[] compressed = this.compressed;
+			if (compressed == null) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 3);
+				try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+					gzip.write(body);
+				}
+				this.compressed = compressed = out.toByteArray();
+			}
+			return compressed;
+		}
+	}
+
+	private interface Handler {
+		void handle(HttpExchange exchange, String path) throws IOException;
+	}
+
+	MiniHelpServer(HelpsetContents contents, SearchEngine searchEngine, InetSocketAddress address)
+			throws IOException {
+		this.contents = contents;
+		this.searchEngine = searchEngine;
+		for (int i = 0; i < contents.baseUris.size(); i++)
+			baseUris.add(contents.baseUris.get(i).toString());
+		toc = json(writeTOC(new JsonWriter(), contents.tableOfContents));
+		index = json(writeIndex(new JsonWriter(), contents.indexes));
+
+		server = HttpServer.create(address, BACKLOG);
+		context("/", this::serveRoot);
+		context("/pages/", this::servePage);
+		context("/files/", this::serveFile);
+		context("/api/toc", (exchange, path) -> serveResource(exchange, path, toc));
+		context("/api/index", (exchange, path) -> serveResource(exchange, path, index));
+		context("/api/search", this::serveSearch);
+	}
+
+	/**
+	 * Sets the number of threads that handle the requests. Must be called
+	 * before the server is started.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the time a search may take before it is stopped and the request
+	 * is answered with 503 Service Unavailable. Defaults to 10 seconds.
+	 */
+	public void setSearchTimeout(long millis) {
+		if (millis < 1)
+			throw new IllegalArgumentException("timeout must be positive");
+		this.searchTimeout = millis;
+	}
+
+	public void start() {
+		executor = Executors.newFixedThreadPool(threads);
+		searchExecutor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stops the server. No more connections are accepted and the requests
+	 * that are being handled are given a few seconds to finish before the
+	 * open connections are closed.
+	 */
+	public void stop() {
+		server.stop(STOP_DELAY);
+		if (executor != null) {
+			executor.shutdown();
+			searchExecutor.shutdown();
+			try {
+				executor.awaitTermination(STOP_DELAY, TimeUnit.SECONDS);
+				searchExecutor.awaitTermination(STOP_DELAY, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on, which is chosen by the system if
+	 * the server was created for port 0.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void context(String prefix, Handler handler) {
+		server.createContext(prefix, exchange -> {
+			try {
+				String method = exchange.getRequestMethod();
+				if (!method.equals("GET") && !method.equals("HEAD")) {
+					exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+					exchange.sendResponseHeaders(405, -1);
+				} else {
+					handler.handle(exchange, exchange.getRequestURI().getRawPath().substring(prefix.length()));
+				}
+			} catch (IllegalArgumentException e) {
+				// malformed parameters or escapes
+				exchange.sendResponseHeaders(400, -1);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				exchange.sendResponseHeaders(500, -1);
+			} finally {
+				exchange.close();
+			}
+		});
+	}
+
+	private void serveRoot(HttpExchange exchange, String path) throws IOException {
+		if (!path.isEmpty() || contents.getHomeID() == null) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		redirect(exchange, pagePath(contents.getHomeID()));
+	}
+
+	/*
+	 * Pages are redirected to their path under the helpset, so that the
+	 * relative links and images of the page are resolved by the browser.
+	 * Pages outside of their helpset are served as they are.
+	 */
+	private void servePage(HttpExchange exchange, String path) throws IOException {
+		URL url = contents.mappedContent.get(decode(path));
+		if (url == null) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		String location = filePath(url);
+		if (location != null)
+			redirect(exchange, location);
+		else
+			serveUrl(exchange, url);
+	}
+
+	/*
+	 * Serves a file from the directory or the archive of a helpset. The path
+	 * is the number of the helpset and the path of the file within it.
+	 */
+	private void serveFile(HttpExchange exchange, String path) throws IOException {
+		int separator = path.indexOf('/');
+		if (separator < 0) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		int helpset = Integer.parseInt(path.substring(0, separator));
+		String file = path.substring(separator + 1);
+		String name = decode(file);
+		if (helpset < 0 || helpset >= baseUris.size() || name.isEmpty() || name.startsWith("/")
+				|| name.contains("\\") || ("/" + name + "/").contains("/../")) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		URL url;
+		try {
+			url = DocumentMapper.resolve(contents.baseUris.get(helpset), file);
+		} catch (MalformedURLException e) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		if (!url.toString().startsWith(baseUris.get(helpset))) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		serveUrl(exchange, url);
+	}
+
+	private void serveUrl(HttpExchange exchange, URL url) throws IOException {
+		URLConnection connection;
+		try {
+			if ("file".equals(url.getProtocol()) && !new File(url.toURI()).isFile())
+				throw new IOException("Not a file: " + url);
+			connection = HelpsetArchive.openConnection(url);
+		} catch (IOException | URISyntaxException e) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		long lastModified = connection.getLastModified();
+		String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(connection.getContentLengthLong())
+				+ "\"";
+		String key = url.toString();
+		Resource resource = fileCache.get(key);
+		if (resource == null || !resource.etag.equals(etag)) {
+			byte[] body;
+			try (InputStream in = connection.getInputStream()) {
+				body = readAll(in);
+			} catch (IOException e) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			resource = new Resource(contentType(url.getPath()), body, etag, lastModified, FILE_CACHE_CONTROL);
+			fileCache.put(key, resource);
+		}
+		send(exchange, resource);
+	}
+
+	private void serveResource(HttpExchange exchange, String path, Resource resource) throws IOException {
+		if (!path.isEmpty()) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		send(exchange, resource);
+	}
+
+	private void serveSearch(HttpExchange exchange, String path) throws IOException {
+		if (!path.isEmpty()) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+		Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+		String keyword = parameters.get("q");
+		if (keyword == null || keyword.isEmpty())
+			throw new IllegalArgumentException("Missing keyword");
+		SearchQuery query = new SearchQuery(keyword).withFullText(isSet(parameters, "fullText"))
+				.withCaseSensitive(isSet(parameters, "caseSensitive"))
+				.withWholeWords(isSet(parameters, "wholeWords")).withRegex(isSet(parameters, "regex"))
+				.withFuzzy(isSet(parameters, "fuzzy"));
+		int limit = parameters.containsKey("limit") ? Integer.parseInt(parameters.get("limit")) : DEFAULT_RESULTS;
+		if (limit < 0)
+			throw new IllegalArgumentException("Negative limit");
+
+		Future<byte[]> search = searchExecutor.submit(() -> search(query, keyword, limit));
+		byte[] body;
+		try {
+			body = search.get(searchTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// stops the search, even a regular expression that backtracks
+			search.cancel(true);
+			exchange.sendResponseHeaders(503, -1);
+			return;
+		} catch (InterruptedException e) {
+			search.cancel(true);
+			Thread.currentThread().interrupt();
+			exchange.sendResponseHeaders(503, -1);
+			return;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		send(exchange, new Resource(JSON_TYPE, body, null, 0, API_CACHE_CONTROL));
+	}
+
+	/*
+	 * Runs a search and writes its results. The snippets are computed here
+	 * too, as they match the pattern of the query in the text of the pages.
+	 */
+	private byte[] search(SearchQuery query, String keyword, int limit) {
+		SearchResults results = searchEngine.search(query);
+		List<SearchResult> list = results.getResults();
+		JsonWriter json = new JsonWriter().beginObject();
+		json.name("query").value(keyword);
+		json.name("total").value(results.getHitCount());
+		json.name("results").beginArray();
+		for (SearchResult r : list.subList(0, Math.min(limit, list.size()))) {
+			json.beginObject();
+			json.name("label").value(r.getLabel());
+			json.name("target").value(r.getTarget());
+			json.name("url").value(pagePath(r.getTarget()));
+			json.name("score").value(r.getScore());
+			json.name("snippet").value(results.getSnippetHtml(r.getTarget()));
+			json.endObject();
+		}
+		json.endArray().endObject();
+		return json.toBytes();
+	}
+
+	private static void send(HttpExchange exchange, Resource resource) throws IOException {
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", resource.type);
+		headers.set("Cache-Control", resource.cacheControl);
+		if (resource.etag != null)
+			headers.set("ETag", resource.etag);
+		if (resource.lastModified > 0)
+			headers.set("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(resource.lastModified)));
+		if (resource.isCompressible())
+			headers.set("Vary", "Accept-Encoding");
+		if (isNotModified(exchange.getRequestHeaders(), resource)) {
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		byte[] body = resource.body;
+		if (resource.isCompressible() && acceptsGzip(exchange.getRequestHeaders())) {
+			body = resource.getCompressed();
+			headers.set("Content-Encoding", "gzip");
+		}
+		if (exchange.getRequestMethod().equals("HEAD") || body.length == 0) {
+			headers.set("Content-Length", Integer.toString(body.length));
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static boolean isNotModified(Headers request, Resource resource) {
+		String ifNoneMatch = request.getFirst("If-None-Match");
+		if (ifNoneMatch != null) {
+			if (resource.etag == null)
+				return false;
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/"))
+					tag = tag.substring(2);
+				if (tag.equals("*") || tag.equals(resource.etag))
+					return true;
+			}
+			return false;
+		}
+		String ifModifiedSince = request.getFirst("If-Modified-Since");
+		if (ifModifiedSince != null && resource.lastModified > 0) {
+			try {
+				long since = ZonedDateTime.parse(ifModifiedSince, HTTP_DATE).toEpochSecond();
+				return resource.lastModified / 1000 <= since;
+			} catch (DateTimeParseException e) {
+				// an invalid date is ignored
+			}
+		}
+		return false;
+	}
+
+	private static boolean acceptsGzip(Headers request) {
+		List<String> encodings = request.get("Accept-Encoding");
+		if (encodings != null)
+			for (String e : encodings)
+				if (e.toLowerCase(Locale.ROOT).contains("gzip"))
+					return true;
+		return false;
+	}
+
+	private static void redirect(HttpExchange exchange, String location) throws IOException {
+		exchange.getResponseHeaders().set("Location", location);
+		exchange.sendResponseHeaders(302, -1);
+	}
+
+	/*
+	 * Returns the path that a document is served at or null if it is not in
+	 * the directory or the archive of a helpset.
+	 */
+	private String filePath(URL url) {
+		String s = url.toString();
+		for (int i = 0; i < baseUris.size(); i++)
+			if (s.startsWith(baseUris.get(i)))
+				return "/files/" + i + "/" + s.substring(baseUris.get(i).length());
+		return null;
+	}
+
+	private static String pagePath(String target) {
+		try {
+			return "/pages/" + URLEncoder.encode(target, "UTF-8").replace("+", "%20");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * Decodes an escaped path. Unlike in a query, a plus sign stands for
+	 * itself.
+	 */
+	private static String decode(String path) {
+		try {
+			return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null)
+			return parameters;
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			if (separator < 0)
+				parameters.put(URLDecoder.decode(parameter, "UTF-8"), "");
+			else
+				parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+						URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+		}
+		return parameters;
+	}
+
+	private static boolean isSet(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		return value != null && !value.equals("false") && !value.equals("0");
+	}
+
+	private static String contentType(String name) {
+		String lower = name.toLowerCase(Locale.ROOT);
+		if (lower.endsWith(".css"))
+			return "text/css";
+		if (lower.endsWith(".js"))
+			return "application/javascript";
+		if (lower.endsWith(".svg"))
+			return "image/svg+xml";
+		String type = URLConnection.guessContentTypeFromName(lower);
+		return (type != null) ? type : "application/octet-stream";
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+			out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+
+	/*
+	 * The table of contents and the index do not change while the server
+	 * runs, so they are written once and validated by a checksum.
+	 */
+	private static Resource json(JsonWriter json) {
+		byte[] body = json.toBytes();
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		return new Resource(JSON_TYPE, body, "\"" + Long.toHexString(crc.getValue()) + "\"", 0, API_CACHE_CONTROL);
+	}
+
+	private static JsonWriter writeTOC(JsonWriter json, List<TOCItem> items) {
+		json.beginArray();
+		for (TOCItem i : items) {
+			json.beginObject();
+			json.name("text").value(i.getText());
+			writeTarget(json, i.getTarget());
+			json.name("items");
+			writeTOC(json, i.getTOCItems());
+			json.endObject();
+		}
+		return json.endArray();
+	}
+
+	private static JsonWriter writeIndex(JsonWriter json, List<IndexItem> items) {
+		json.beginArray();
+		for (IndexItem i : items) {
+			json.beginObject();
+			json.name("text").value(i.getText());
+			writeTarget(json, i.getTarget());
+			json.name("items");
+			writeIndex(json, i.getIndexItems());
+			json.name("entries").beginArray();
+			for (IndexEntry e : i.getIndexEntries()) {
+				json.beginObject();
+				json.name("text").value(e.getText());
+				writeTarget(json, e.getTarget());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		}
+		return json.endArray();
+	}
+
+	private static void writeTarget(JsonWriter json, String target) {
+		if (target == null)
+			return;
+		json.name("target").value(target);
+		json.name("url").value(pagePath(target));
+	}
+
+	/**
+	 * The main method that starts the server.
+	 * 
+	 * @param args the command-line parameters.
+	 */
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		List<String> helpsets = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-p") && i + 1 < args.length)
+				port = Integer.parseInt(args[++i]);
+			else
+				helpsets.add(args[i]);
+		}
+		try {
+			MiniHelpFactory factory = new MiniHelpFactory();
+			MiniHelpViewer.addHelpsets(factory, helpsets);
+			MiniHelpServer server = factory.getMiniHelpServer(new InetSocketAddress(port));
+			server.start();
+			System.out.println("Serving help at http://localhost:" + server.getPort() + "/");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -29,20 +29,20 @@
 package org.kovesdan.minihelp;
 
 import java.io.File;
-import java.net.URI;
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
-import javax.xml.bind.JAXBException;
-
-import org.kovesdan.minihelp.xml.Configuration;
-import org.kovesdan.minihelp.xml.ConfigurationReader;
 
 /**
  * The main class that can be called from command-line to display the help
- * window for a given configuration file. The only command-line argument is the
- * path to the configuration file.
+ * window for a given configuration file. The command-line arguments are the
+ * paths to the configuration files or helpset archives; more than one helpset
+ * can be shown in the same window.
  * 
  * @author Gábor Kövesdán
  */
@@ -55,20 +55,31 @@ public class MiniHelpViewer {
 	 */
 	public static void main(String[] args) {
 		try {
-			File config = new File(args[0]);
-			URI baseUri = config.getParentFile().toURI();
-			Configuration configuration = ConfigurationReader.parseConfiguration(config);
-
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
 
 			MiniHelpFactory factory = new MiniHelpFactory();
 			factory.setMainTitle("Documentation");
-			factory.addHelpset(configuration, baseUri);
+			addHelpsets(factory, Arrays.asList(args));
 			MiniHelp help = factory.getMiniHelp();
 			SwingUtilities.invokeLater(() -> help.setVisible(true));
-		} catch (JAXBException | ClassNotFoundException | InstantiationException | IllegalAccessException
+		} catch (MalformedURLException | ClassNotFoundException | InstantiationException | IllegalAccessException
 				| UnsupportedLookAndFeelException e) {
 			e.printStackTrace();
 		}
 	}
+
+	/*
+	 * Adds the helpsets given on the command line: configuration files or
+	 * helpset archives.
+	 */
+	static void addHelpsets(MiniHelpFactory factory, List<String> paths) throws MalformedURLException {
+		for (String path : paths) {
+			File config = new File(path).getAbsoluteFile();
+			String name = config.getName().toLowerCase(Locale.ROOT);
+			if (name.endsWith(".zip") || name.endsWith(".jar"))
+				factory.addHelpset(config);
+			else
+				factory.addHelpset(config.toURI().toURL(), config.getParentFile().toURI());
+		}
+	}
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.Document;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+
+import org.kovesdan.minihelp.xml.TOCItem;
+
+/**
+ * Loads the pages that the user is likely to open next into the page cache:
+ * the neighbours of the displayed page in the table of contents and the first
+ * links of the page. The pages are loaded one by one on a single thread of
+ * low priority, until the pages loaded for the displayed page reach the
+ * memory budget. Prefetching is cancelled as soon as another page is
+ * requested.
+ */
+class PagePrefetcher {
+	private static final int MAX_LINKS = 3;
+
+	private final DocumentCache cache;
+	private final long budget;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "MiniHelp page prefetcher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	private Future<?> running;
+	private volatile int prefetched;
+
+	public PagePrefetcher(DocumentCache cache, long budget) {
+		this.cache = cache;
+		this.budget = budget;
+	}
+
+	/**
+	 * Starts loading the given pages, cancelling the pages that are still
+	 * being loaded for the previous page.
+	 */
+	public synchronized void prefetch(List<URL> urls, HTMLEditorKit kit) {
+		cancel();
+		running = executor.submit(() -> {
+			long loaded = 0;
+			for (URL url : urls) {
+				if (Thread.currentThread().isInterrupted() || loaded >= budget)
+					return;
+				if (cache.contains(url))
+					continue;
+				try {
+					loaded += DocumentCache.estimateSize(cache.load(url, kit));
+					prefetched++;
+				} catch (IOException e) {
+					// the page is loaded again when it is displayed
+				}
+			}
+		});
+	}
+
+	public synchronized void cancel() {
+		if (running != null)
+			running.cancel(true);
+		running = null;
+	}
+
+	/**
+	 * Returns the number of pages that have been prefetched.
+	 */
+	public int getPrefetchCount() {
+		return prefetched;
+	}
+
+	/**
+	 * Returns the pages that are likely to be opened after the given one:
+	 * the previous and the next page in the table of contents and the pages
+	 * of the first links.
+	 */
+	static List<URL> likelyNextPages(URL url, Document doc, List<TOCItem> tableOfContents,
+			Map<String, URL> mappedContent) {
+		Set<String> pages = new LinkedHashSet<>();
+		String key = DocumentCache.key(url);
+		addNeighbours(tableOfContents, key, mappedContent, pages);
+		addLinks(doc, pages);
+		pages.remove(key);
+
+		List<URL> urls = new ArrayList<>();
+		for (String page : pages) {
+			try {
+				urls.add(new URL(page));
+			} catch (MalformedURLException e) {
+			}
+		}
+		return urls;
+	}
+
+	private static boolean addNeighbours(List<TOCItem> items, String key, Map<String, URL> mappedContent,
+			Set<String> pages) {
+		for (int i = 0; i < items.size(); i++) {
+			URL url = mappedContent.get(items.get(i).getTarget());
+			if (url != null && DocumentCache.key(url).equals(key)) {
+				addPage(items, i + 1, mappedContent, pages);
+				addPage(items, i - 1, mappedContent, pages);
+				return true;
+			}
+			if (addNeighbours(items.get(i).getTOCItems(), key, mappedContent, pages))
+				return true;
+		}
+		return false;
+	}
+
+	private static void addPage(List<TOCItem> items, int index, Map<String, URL> mappedContent, Set<String> pages) {
+		if (index < 0 || index >= items.size())
+			return;
+		URL url = mappedContent.get(items.get(index).getTarget());
+		if (url != null)
+			pages.add(DocumentCache.key(url));
+	}
+
+	private static void addLinks(Document doc, Set<String> pages) {
+		if (!(doc instanceof HTMLDocument))
+			return;
+		HTMLDocument html = (HTMLDocument) doc;
+		if (html.getBase() == null)
+			return;
+		int links = 0;
+		for (HTMLDocument.Iterator it = html.getIterator(HTML.Tag.A); it.isValid() && links < MAX_LINKS; it.next()) {
+			AttributeSet attributes = it.getAttributes();
+			Object href = (attributes != null) ? attributes.getAttribute(HTML.Attribute.HREF) : null;
+			if (href == null)
+				continue;
+			try {
+				URL url = new URL(html.getBase(), href.toString());
+				if (url.getProtocol().equals(html.getBase().getProtocol()) && pages.add(DocumentCache.key(url)))
+					links++;
+			} catch (MalformedURLException e) {
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable trie that maps string keys to integer values. The values are
+ * stored in key order, so the values of all keys with a given prefix form a
+ * contiguous range and a lookup costs the length of the prefix plus the
+ * number of values returned.
+ */
+class PrefixTrie {
+	private final char[][] edges;
+	private final int[][] children;
+	private final int[] start;
+	private final int[] exactEnd;
+	private final int[] end;
+	private final int[] values;
+
+	static class Builder {
+		private List<String> keys = new ArrayList<>();
+		private List<Integer> values = new ArrayList<>();
+
+		public void add(String key, int value) {
+			keys.add(key);
+			values.add(value);
+		}
+
+		public PrefixTrie build() {
+			Integer[] order = new Integer[keys.size()];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+			String[] sortedKeys = new String[order.length];
+			int[] sortedValues = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				sortedKeys[i] = keys.get(order[i]);
+				sortedValues[i] = values.get(order[i]);
+			}
+			return new PrefixTrie(sortedKeys, sortedValues);
+		}
+	}
+
+	private PrefixTrie(String[] keys, int[] values) {
+		this.values = values;
+		List<char[]> edges = new ArrayList<>();
+		List<int[]> children = new ArrayList<>();
+		List<int[]> ranges = new ArrayList<>();
+		addNode(keys, 0, keys.length, 0, edges, children, ranges);
+
+		int nodes = edges.size();
+		this.edges = edges.toArray(new char[nodes][]);
+		this.children = children.toArray(new int[nodes][]);
+		start = new int[nodes];
+		exactEnd = new int[nodes];
+		end = new int[nodes];
+		for (int i = 0; i < nodes; i++) {
+			start[i] = ranges.get(i)[0];
+			exactEnd[i] = ranges.get(i)[1];
+			end[i] = ranges.get(i)[2];
+		}
+	}
+
+	/*
+	 * The keys from..to share their first depth characters. The keys that end
+	 * here come first, followed by the groups of keys that continue with the
+	 * same character.
+	 */
+	private static int addNode(String[] keys, int from, int to, int depth, List<char[]> edges, List<int[]> children,
+			List<int[]> ranges) {
+		int node = edges.size();
+		edges.add(null);
+		children.add(null);
+		ranges.add(null);
+
+		int i = from;
+		while (i < to && keys[i].length() == depth)
+			i++;
+		int exact = i;
+
+		StringBuilder labels = new StringBuilder();
+		List<Integer> childNodes = new ArrayList<>();
+		while (i < to) {
+			char c = keys[i].charAt(depth);
+			int j = i + 1;
+			while (j < to && keys[j].charAt(depth) == c)
+				j++;
+			labels.append(c);
+			childNodes.add(addNode(keys, i, j, depth + 1, edges, children, ranges));
+			i = j;
+		}
+
+		int[] childArray = new int[childNodes.size()];
+		for (int k = 0; k < childArray.length; k++)
+			childArray[k] = childNodes.get(k);
+		edges.set(node, labels.toString().toCharArray());
+		children.set(node, childArray);
+		ranges.set(node, new int[] { from, exact, to });
+		return node;
+	}
+
+	private int find(String key) {
+		int node = 0;
+		for (int i = 0; i < key.length() && node >= 0; i++) {
+			int edge = Arrays.binarySearch(edges[node], key.charAt(i));
+			node = (edge >= 0) ? children[node][edge] : -1;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the values of the keys that start with the given prefix.
+	 */
+	public int[] withPrefix(String prefix) {
+		int node = find(prefix);
+		return (node >= 0) ? Arrays.copyOfRange(values, start[node], end[node]) : new int[0];
+	}
+
+	/**
+	 * Returns the values of the given key.
+	 */
+	public int[] get(String key) {
+		int node = find(key);
+		return (node >= 0) ? Arrays.copyOfRange(values, start[node], exactEnd[node]) : new int[0];
+	}
+
+	/**
+	 * Returns the keys that the automaton accepts, with their edit distance.
+	 * Only the branches of the trie that can still be accepted are visited.
+	 */
+	public Map<String, Integer> expand(LevenshteinAutomaton automaton) {
+		Map<String, Integer> result = new HashMap<>();
+		expand(0, new StringBuilder(), automaton.start(), automaton, result);
+		return result;
+	}
+
+	private void expand(int node, StringBuilder key, int[] state, LevenshteinAutomaton automaton,
+			Map<String, Integer> result) {
+		if (exactEnd[node] > start[node] && automaton.isMatch(state))
+			result.put(key.toString(), automaton.distance(state));
+		for (int i = 0; i < edges[node].length; i++) {
+			int[] next = automaton.step(state, edges[node][i]);
+			if (!automaton.canMatch(next))
+				continue;
+			key.append(edges[node][i]);
+			expand(children[node][i], key, next, automaton, result);
+			key.setLength(key.length() - 1);
+		}
+	}
+
+	public int size() {
+		return values.length;
+	}
+}
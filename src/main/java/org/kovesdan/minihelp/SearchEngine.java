@@ -0,0 +1,596 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import org.kovesdan.minihelp.HtmlTextScanner.TextHandler;
+import org.kovesdan.minihelp.xml.IndexEntry;
+import org.kovesdan.minihelp.xml.IndexItem;
+import org.kovesdan.minihelp.xml.TOCItem;
+
+/**
+ * Searches the table of contents, the index and the pages of the loaded
+ * helpsets. Does not depend on Swing and can be used by any number of threads
+ * at the same time. A search that runs in a thread that is interrupted stops
+ * with a {@link CancellationException}.
+ */
+public class SearchEngine {
+	private static final int SCAN_CHUNK = 8;
+	private static final int MAX_RESULTS = 500;
+	private static final double TOC_BOOST = 5;
+	private static final double INDEX_BOOST = 3;
+	private static final double SCAN_SCORE = 1;
+	private static final int PROGRESS_FRAME_RATE = 25;
+	private static final ScheduledExecutorService PROGRESS_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "MiniHelp search progress");
+		t.setDaemon(true);
+		return t;
+	});
+	private final HelpsetContents contents;
+	private final FullTextIndex fullTextIndex;
+	private volatile Snapshot snapshot;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ForkJoinPool scanPool;
+
+	/*
+	 * The contents as they were when the helpsets were last added. Searches
+	 * only read it, so they do not have to synchronize with each other.
+	 */
+	private static class Snapshot {
+		final Map<String, URL> mappedContent;
+		final Set<String> targets;
+		final List<IndexItem> index;
+		final List<TOCItem> tocItems;
+		final TitleIndex titleIndex;
+		final Map<String, String> titles = new HashMap<>();
+
+		Snapshot(HelpsetContents contents) {
+			mappedContent = Collections.unmodifiableMap(new HashMap<>(contents.mappedContent));
+			targets = mappedContent.keySet();
+			index = Collections.unmodifiableList(new ArrayList<>(contents.indexes));
+			tocItems = Collections.unmodifiableList(new ArrayList<>(contents.tableOfContents));
+			titleIndex = new TitleIndex(index, tocItems, INDEX_BOOST, TOC_BOOST);
+			for (TOCItem i : tocItems)
+				collectTitles(i);
+		}
+
+		private void collectTitles(TOCItem item) {
+			if (item.getTarget() != null)
+				titles.putIfAbsent(item.getTarget(), item.getText());
+			for (TOCItem i : item.getTOCItems())
+				collectTitles(i);
+		}
+
+		/*
+		 * Returns the label of a page that was found by its content: its
+		 * title in the table of contents or its file name.
+		 */
+		String getTitle(String target) {
+			String title = titles.get(target);
+			return (title != null) ? title : new File(mappedContent.get(target).getFile()).getName();
+		}
+	}
+
+	SearchEngine(HelpsetContents contents) {
+		this.contents = contents;
+		this.fullTextIndex = contents.fullTextIndex;
+		this.snapshot = new Snapshot(contents);
+	}
+
+	/**
+	 * Makes the helpsets that were added since the last update searchable.
+	 * Searches that are already running finish on the previous contents.
+	 */
+	void update() {
+		snapshot = new Snapshot(contents);
+	}
+
+	/**
+	 * Indexes the pages that have no prebuilt full-text index. Full-text
+	 * searches index such pages when they first search them; afterwards, they
+	 * only read the index.
+	 */
+	public void indexAll() {
+		Snapshot snapshot = this.snapshot;
+		List<String> targets = new ArrayList<>(snapshot.mappedContent.keySet());
+		getScanPool().submit(() -> targets.parallelStream()
+				.forEach(target -> indexDocument(target, snapshot.mappedContent.get(target)))).join();
+	}
+
+	/**
+	 * Returns the number of pages that can be searched.
+	 */
+	public int getPageCount() {
+		return snapshot.mappedContent.size();
+	}
+
+	/**
+	 * Runs a search and waits for its results.
+	 * 
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted.
+	 */
+	public SearchResults search(SearchQuery query) {
+		return search(query, null);
+	}
+
+	/**
+	 * Runs a search that may be narrowed down from the results of a previous
+	 * one. While the keyword is typed, every query extends the previous one
+	 * and only the pages that the previous one found have to be searched.
+	 * 
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted.
+	 */
+	public SearchResults search(SearchQuery query, SearchResults previous) {
+		return search(query, previous, new SearchProgress());
+	}
+
+	/**
+	 * Runs a search like {@link #search(SearchQuery, SearchResults)} and
+	 * reports its progress to a listener. The progress is sampled at a fixed
+	 * rate on a timer thread, so the listener may see only some of the
+	 * intermediate values, but the final value is always reported before
+	 * the results are returned. The listener is never called concurrently
+	 * and should return quickly.
+	 * 
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted.
+	 */
+	public SearchResults search(SearchQuery query, SearchResults previous, SearchProgressListener listener) {
+		SearchProgress progress = new SearchProgress();
+		ProgressSampler sampler = new ProgressSampler(progress, listener);
+		ScheduledFuture<?> sampling = PROGRESS_TIMER.scheduleAtFixedRate(sampler::sample, 1000 / PROGRESS_FRAME_RATE,
+				1000 / PROGRESS_FRAME_RATE, TimeUnit.MILLISECONDS);
+		try {
+			SearchResults results = search(query, previous, progress);
+			sampler.finish();
+			return results;
+		} finally {
+			sampling.cancel(false);
+		}
+	}
+
+	/*
+	 * Reports the changes of the progress counter to a listener. The final
+	 * value is reported by the searching thread unless the last sample has
+	 * already reported it, and no sample is reported after it.
+	 */
+	private static class ProgressSampler {
+		private final SearchProgress progress;
+		private final SearchProgressListener listener;
+		private int reportedValue = -1;
+		private int reportedMaximum = -1;
+		private boolean finished;
+
+		ProgressSampler(SearchProgress progress, SearchProgressListener listener) {
+			this.progress = progress;
+			this.listener = listener;
+		}
+
+		synchronized void sample() {
+			if (!finished)
+				report(progress.getValue(), progress.getMaximum());
+		}
+
+		synchronized void finish() {
+			finished = true;
+			report(progress.getMaximum(), progress.getMaximum());
+		}
+
+		private void report(int value, int maximum) {
+			if (value == reportedValue && maximum == reportedMaximum)
+				return;
+			reportedValue = value;
+			reportedMaximum = maximum;
+			listener.searchProgress(value, maximum);
+		}
+	}
+
+	SearchResults search(SearchQuery query, SearchResults previous, SearchProgress progress) {
+		Search search = new Search(query, previous, progress);
+		search.run();
+		if (search.isCancelled())
+			throw new CancellationException();
+		return search.getResults();
+	}
+
+	/*
+	 * The state of a single search. It is confined to the calling thread
+	 * except for the sets that the scan workers return and the snippets.
+	 */
+	private class Search {
+		private final Snapshot snapshot = SearchEngine.this.snapshot;
+		private final Thread caller = Thread.currentThread();
+		private final SearchQuery query;
+		private final String keyword;
+		private Pattern pattern;
+		private final SearchResults previous;
+		private final SearchProgress progress;
+		private Map<LinkInfo, Double> labelHits = new HashMap<>();
+		private Map<String, Double> documentHits = new HashMap<>();
+		private List<SearchResult> results = Collections.emptyList();
+		private int hitCount;
+		private Map<String, Snippet> snippets = new ConcurrentHashMap<>();
+		private volatile boolean cancelled;
+		private boolean indexing;
+
+		Search(SearchQuery query, SearchResults previous, SearchProgress progress) {
+			this.query = query;
+			this.keyword = query.getKeyword();
+			this.pattern = query.isFuzzy() ? null
+					: compilePattern(keyword, query.isCaseSensitive(), query.isRegex(), query.isWholeWords());
+			this.previous = (previous != null && previous.getSource() == snapshot && query.narrows(previous.getQuery()))
+					? previous : null;
+			this.progress = progress;
+		}
+
+		boolean isCancelled() {
+			return cancelled || caller.isInterrupted();
+		}
+
+		SearchResults getResults() {
+			return new SearchResults(query, results, hitCount, pattern,
+					Collections.unmodifiableSet(documentHits.keySet()),
+					snippets, fullTextIndex, snapshot);
+		}
+
+		void run() {
+			boolean fullText = query.isFullText();
+			boolean regex = query.isRegex();
+			boolean wholeWords = query.isWholeWords();
+			boolean fuzzy = query.isFuzzy();
+			Collection<String> documents = (previous != null) ? previous.getDocuments()
+					: snapshot.mappedContent.keySet();
+			boolean lookup = fuzzy || TitleIndex.canAnswer(keyword, regex, wholeWords);
+			boolean indexable = fuzzy || FullTextIndex.canAnswer(keyword, regex, wholeWords);
+			indexing = fullText && indexable && !fullTextIndex.isIndexed(snapshot.targets);
+			int maximum = lookup ? 1 : snapshot.index.size() + snapshot.tocItems.size();
+			if (fullText && (!indexable || indexing))
+				maximum += documents.size();
+			progress.setMaximum(maximum);
+
+			if (fuzzy) {
+				searchFuzzy(documents);
+			} else if (lookup) {
+				labelHits.putAll(snapshot.titleIndex.search(keyword, pattern));
+				progress.increment();
+			} else {
+				for (IndexItem i : snapshot.index) {
+					if (isCancelled())
+						return;
+					searchIndexItem(i);
+					progress.increment();
+				}
+				for (TOCItem i : snapshot.tocItems) {
+					if (isCancelled())
+						return;
+					searchTOCItem(i);
+					progress.increment();
+				}
+			}
+			if (fullText && !fuzzy && indexable) {
+				indexDocuments(documents);
+				Map<String, Double> candidates = new HashMap<>();
+				for (Entry<String, Double> e : fullTextIndex.search(keyword).entrySet())
+					if (documents.contains(e.getKey()))
+						candidates.put(e.getKey(), e.getValue());
+				// the index ignores case and punctuation, so it only finds candidates
+				progress.setMaximum(maximum + candidates.size());
+				for (String target : scan(candidates.keySet(), this::searchDocument))
+					documentHits.put(target, candidates.get(target));
+			} else if (fullText && !fuzzy) {
+				for (String target : scan(documents, this::searchDocument))
+					documentHits.put(target, SCAN_SCORE);
+			}
+			if (isCancelled())
+				return;
+
+			// a page found by its title is listed once, under the title
+			TopResults<SearchResult> top = new TopResults<>(MAX_RESULTS);
+			Set<String> labelled = new HashSet<>();
+			for (Entry<LinkInfo, Double> e : labelHits.entrySet()) {
+				String target = e.getKey().getTarget();
+				labelled.add(target);
+				double score = e.getValue() + documentHits.getOrDefault(target, 0.0);
+				top.add(new SearchResult(e.getKey().getLabel(), target, score), score);
+			}
+			hitCount = labelHits.size();
+			for (Entry<String, Double> e : documentHits.entrySet())
+				if (!labelled.contains(e.getKey())) {
+					top.add(new SearchResult(snapshot.getTitle(e.getKey()), e.getKey(), e.getValue()), e.getValue());
+					hitCount++;
+				}
+			results = top.toList();
+		}
+
+		/*
+		 * Expands every word of the query to the label words and the indexed
+		 * terms within a small edit distance and searches for those. The
+		 * pattern that highlights the results matches the expanded terms.
+		 */
+		private void searchFuzzy(Collection<String> documents) {
+			List<String> words = FullTextIndex.tokenize(keyword);
+			Set<String> terms = new HashSet<>();
+			List<Map<String, Integer>> expansions = new ArrayList<>();
+			for (String w : words) {
+				Map<String, Integer> expansion = snapshot.titleIndex.expand(w);
+				terms.addAll(expansion.keySet());
+				expansions.add(expansion);
+			}
+			labelHits.putAll(snapshot.titleIndex.search(expansions));
+			progress.increment();
+
+			if (query.isFullText() && !isCancelled()) {
+				indexDocuments(documents);
+				expansions.clear();
+				for (String w : words) {
+					Map<String, Integer> expansion = fullTextIndex.expand(w);
+					terms.addAll(expansion.keySet());
+					expansions.add(expansion);
+				}
+				for (Entry<String, Double> e : fullTextIndex.search(expansions).entrySet())
+					if (documents.contains(e.getKey()))
+						documentHits.put(e.getKey(), e.getValue());
+			}
+			pattern = termPattern(terms);
+		}
+
+		/*
+		 * Indexes the documents that have no prebuilt index. The pass is
+		 * skipped once the index has all the mapped documents.
+		 */
+		private void indexDocuments(Collection<String> documents) {
+			if (!indexing)
+				return;
+			scan(documents, target -> {
+				indexDocument(target, snapshot.mappedContent.get(target));
+				return false;
+			});
+		}
+
+		/*
+		 * Runs the test on the documents in the scan pool. Each worker
+		 * collects the documents that passed into its own set and the sets
+		 * are merged when the subtasks are joined. The caller waits
+		 * interruptibly and tells the workers to stop, since joining the task
+		 * would hide the interrupt from them until the scan completed.
+		 */
+		private Set<String> scan(Collection<String> documents, Predicate<String> test) {
+			ForkJoinTask<Set<String>> task = getScanPool()
+					.submit(new ScanTask(new ArrayList<>(documents), 0, documents.size(), test));
+			try {
+				return task.get();
+			} catch (InterruptedException e) {
+				cancelled = true;
+				caller.interrupt();
+				return Collections.emptySet();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		class ScanTask extends RecursiveTask<Set<String>> {
+			private static final long serialVersionUID = 1L;
+			private final List<String> documents;
+			private final int from;
+			private final int to;
+			private final Predicate<String> test;
+
+			ScanTask(List<String> documents, int from, int to, Predicate<String> test) {
+				this.documents = documents;
+				this.from = from;
+				this.to = to;
+				this.test = test;
+			}
+
+			@Override
+			protected Set<String> compute() {
+				if (to - from <= SCAN_CHUNK) {
+					Set<String> hits = new HashSet<>();
+					for (int i = from; i < to && !isCancelled(); i++) {
+						if (test.test(documents.get(i)))
+							hits.add(documents.get(i));
+						progress.increment();
+					}
+					return hits;
+				}
+				int mid = (from + to) >>> 1;
+				ScanTask left = new ScanTask(documents, from, mid, test);
+				left.fork();
+				Set<String> hits = new ScanTask(documents, mid, to, test).compute();
+				Set<String> leftHits = left.join();
+				if (leftHits.size() > hits.size()) {
+					leftHits.addAll(hits);
+					return leftHits;
+				}
+				hits.addAll(leftHits);
+				return hits;
+			}
+		}
+
+		private boolean matches(String string) {
+			if (pattern == null)
+				return false;
+			return pattern.matcher(new InterruptibleCharSequence(string, this::isCancelled)).find();
+		}
+
+		private void searchIndexItem(IndexItem item) {
+			if (matches(item.getText()) && item.getTarget() != null)
+				labelHits.merge(new LinkInfo(item.getText().trim(), item.getTarget()), INDEX_BOOST, Double::sum);
+
+			for (IndexItem i : item.getIndexItems())
+				searchIndexItem(i);
+			for (IndexEntry e : item.getIndexEntries())
+				searchIndexEntry(e);
+		}
+
+		private void searchIndexEntry(IndexEntry entry) {
+			if (matches(entry.getText()))
+				labelHits.merge(new LinkInfo(entry.getText(), entry.getTarget()), INDEX_BOOST, Double::sum);
+		}
+
+		private void searchTOCItem(TOCItem item) {
+			if (matches(item.getText()))
+				labelHits.merge(new LinkInfo(item.getText(), item.getTarget()), TOC_BOOST, Double::sum);
+			for (TOCItem i : item.getTOCItems())
+				searchTOCItem(i);
+		}
+
+		/*
+		 * The text is matched block by block, so a match may span inline
+		 * markup but not paragraphs. The snippet of the match is kept, so
+		 * that the document does not have to be read again to show it.
+		 */
+		private boolean searchDocument(String target) {
+			if (pattern == null)
+				return false;
+			StringBuilder block = new StringBuilder();
+			Matcher matcher = pattern.matcher(new InterruptibleCharSequence(block, this::isCancelled));
+			boolean[] found = { false };
+			try {
+				HtmlTextScanner.get().scan(snapshot.mappedContent.get(target), new TextHandler() {
+					@Override
+					public void text(char[] text, int start, int length) {
+						block.append(text, start, length);
+					}
+
+					@Override
+					public boolean endOfBlock() {
+						if (block.length() > 0) {
+							found[0] = matcher.reset().find();
+							if (found[0])
+								snippets.put(target, Snippet.around(block, matcher.start(), matcher.end()));
+							block.setLength(0);
+						}
+						return !found[0] && !isCancelled();
+					}
+				});
+			} catch (IOException e) {
+			}
+			return found[0];
+		}
+	}
+
+	private void indexDocument(String target, URL url) {
+		if (fullTextIndex.isIndexed(target))
+			return;
+		try {
+			fullTextIndex.addDocument(target, url);
+		} catch (IOException e) {
+		}
+	}
+
+	private static Pattern compilePattern(String keyword, boolean caseSensitive, boolean regex, boolean wholeWords) {
+		int flags = 0;
+		if (!caseSensitive)
+			flags += Pattern.CASE_INSENSITIVE;
+		
+		if (!regex && !wholeWords)
+			flags += Pattern.LITERAL;
+		
+		String pat = keyword;
+		if (wholeWords) {
+			// the match is only the word, so that its snippet shows it
+			if (!keyword.startsWith("\\b") && !keyword.startsWith(".*\\b"))
+				pat = "\\b" + pat;
+			if (!keyword.endsWith("\\b") && !keyword.endsWith("\\b.*"))
+				pat = pat + "\\b";
+		} 
+
+		try {
+			return Pattern.compile(pat, flags);
+		} catch (PatternSyntaxException e) {
+			// an incomplete regular expression while typing
+			return null;
+		}
+	}
+
+	/*
+	 * Compiles a pattern that matches any of the given terms as a whole word.
+	 */
+	private static Pattern termPattern(Collection<String> terms) {
+		if (terms.isEmpty())
+			return null;
+		String pat = terms.stream().map(Pattern::quote)
+				.collect(Collectors.joining("|", "(?<![\\p{L}\\p{N}])(?:", ")(?![\\p{L}\\p{N}])"));
+		return Pattern.compile(pat, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+	}
+
+	private synchronized ForkJoinPool getScanPool() {
+		if (scanPool == null)
+			scanPool = new ForkJoinPool(parallelism);
+		return scanPool;
+	}
+
+	/**
+	 * Sets the number of threads that scan the documents in a full-text
+	 * search. Defaults to the number of available processors. The threads
+	 * are shared by the concurrent searches.
+	 */
+	public synchronized void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive");
+		if (parallelism == this.parallelism)
+			return;
+		this.parallelism = parallelism;
+		if (scanPool != null)
+			scanPool.shutdown();
+		scanPool = null;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+/**
+ * An immutable search query: the keyword and the options of the search. The
+ * options are changed by creating a modified copy, for example
+ * <code>new SearchQuery("print").withFullText(true)</code>.
+ */
+public final class SearchQuery {
+	private final String keyword;
+	private final boolean fullText;
+	private final boolean caseSensitive;
+	private final boolean wholeWords;
+	private final boolean regex;
+	private final boolean fuzzy;
+
+	/**
+	 * Creates a case-insensitive literal query that only searches the labels
+	 * of the table of contents and the index.
+	 */
+	public SearchQuery(String keyword) {
+		this(keyword, false, false, false, false, false);
+	}
+
+	private SearchQuery(String keyword, boolean fullText, boolean caseSensitive, boolean wholeWords, boolean regex,
+			boolean fuzzy) {
+		if (keyword == null)
+			throw new IllegalArgumentException("keyword must not be null");
+		this.keyword = keyword;
+		this.fullText = fullText;
+		this.caseSensitive = caseSensitive;
+		this.wholeWords = wholeWords;
+		this.regex = regex;
+		this.fuzzy = fuzzy;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public boolean isFullText() {
+		return fullText;
+	}
+
+	public boolean isCaseSensitive() {
+		return caseSensitive;
+	}
+
+	public boolean isWholeWords() {
+		return wholeWords;
+	}
+
+	public boolean isRegex() {
+		return regex;
+	}
+
+	public boolean isFuzzy() {
+		return fuzzy;
+	}
+
+	public SearchQuery withKeyword(String keyword) {
+		return new SearchQuery(keyword, fullText, caseSensitive, wholeWords, regex, fuzzy);
+	}
+
+	/**
+	 * Returns a copy of the query that also searches the text of the
+	 * documents.
+	 */
+	public SearchQuery withFullText(boolean fullText) {
+		return new SearchQuery(keyword, fullText, caseSensitive, wholeWords, regex, fuzzy);
+	}
+
+	public SearchQuery withCaseSensitive(boolean caseSensitive) {
+		return new SearchQuery(keyword, fullText, caseSensitive, wholeWords, regex, fuzzy);
+	}
+
+	/**
+	 * Returns a copy of the query that only matches whole words. The keyword
+	 * is then treated as a regular expression.
+	 */
+	public SearchQuery withWholeWords(boolean wholeWords) {
+		return new SearchQuery(keyword, fullText, caseSensitive, wholeWords, regex, fuzzy);
+	}
+
+	public SearchQuery withRegex(boolean regex) {
+		return new SearchQuery(keyword, fullText, caseSensitive, wholeWords, regex, fuzzy);
+	}
+
+	/**
+	 * Returns a copy of the query that also matches words within a small
+	 * edit distance of the words of the keyword. The keyword is then not
+	 * treated as a regular expression.
+	 */
+	public SearchQuery withFuzzy(boolean fuzzy) {
+		return new SearchQuery(keyword, fullText, caseSensitive, wholeWords, regex, fuzzy);
+	}
+
+	/*
+	 * A literal query that extends the previous one can only match where the
+	 * previous one did, so only those results have to be checked.
+	 */
+	boolean narrows(SearchQuery previous) {
+		return previous != null && !regex && !wholeWords && !fuzzy && !previous.regex && !previous.wholeWords
+				&& !previous.fuzzy && previous.caseSensitive == caseSensitive && previous.fullText == fullText
+				&& keyword.startsWith(previous.keyword);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = keyword.hashCode();
+		result = prime * result + (fullText ? 1 : 0);
+		result = prime * result + (caseSensitive ? 1 : 0);
+		result = prime * result + (wholeWords ? 1 : 0);
+		result = prime * result + (regex ? 1 : 0);
+		result = prime * result + (fuzzy ? 1 : 0);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SearchQuery other = (SearchQuery) obj;
+		return keyword.equals(other.keyword) && fullText == other.fullText && caseSensitive == other.caseSensitive
+				&& wholeWords == other.wholeWords && regex == other.regex && fuzzy == other.fuzzy;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(keyword);
+		if (fullText)
+			sb.append(" [full text]");
+		if (caseSensitive)
+			sb.append(" [case sensitive]");
+		if (wholeWords)
+			sb.append(" [whole words]");
+		if (regex)
+			sb.append(" [regex]");
+		if (fuzzy)
+			sb.append(" [fuzzy]");
+		return sb.toString();
+	}
+}
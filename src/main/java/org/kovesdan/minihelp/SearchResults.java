@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The results of a search, the best one first. Snippets of the matches are
+ * computed when they are first asked for, so that only the results that are
+ * shown pay for them. Safe to share between threads.
+ */
+public final class SearchResults {
+	private final SearchQuery query;
+	private final List<SearchResult> results;
+	private final int hitCount;
+	private final Pattern pattern;
+	private final Set<String> documents;
+	private final Map<String, Snippet> snippets;
+	private final FullTextIndex fullTextIndex;
+	private final Object source;
+
+	SearchResults(SearchQuery query, List<SearchResult> results, int hitCount, Pattern pattern,
+			Set<String> documents, Map<String, Snippet> snippets, FullTextIndex fullTextIndex, Object source) {
+		this.query = query;
+		this.results = Collections.unmodifiableList(results);
+		this.hitCount = hitCount;
+		this.pattern = pattern;
+		this.documents = documents;
+		this.snippets = snippets;
+		this.fullTextIndex = fullTextIndex;
+		this.source = source;
+	}
+
+	public SearchQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the best results. Their number is limited, see
+	 * {@link #getHitCount()}.
+	 */
+	public List<SearchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the number of results found, which may be more than the results
+	 * that are returned.
+	 */
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the pattern that matches the keyword in the found pages or null
+	 * if the keyword is an incomplete regular expression.
+	 */
+	public Pattern getHighlightPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Returns the HTML markup of the first match in the page of the target
+	 * with some of its context or null if the page does not contain a match.
+	 * 
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the calling thread is interrupted.
+	 */
+	public String getSnippetHtml(String target) {
+		Snippet snippet = getSnippet(target);
+		return (snippet != null) ? snippet.toHtml() : null;
+	}
+
+	/*
+	 * The pages that matched the full-text search, a narrower query only has
+	 * to search these.
+	 */
+	Set<String> getDocuments() {
+		return documents;
+	}
+
+	/*
+	 * The contents that were searched. Results of earlier contents cannot be
+	 * narrowed down.
+	 */
+	Object getSource() {
+		return source;
+	}
+
+	/*
+	 * Returns whether the snippet of a result is known, so that getSnippet()
+	 * does not have to read the text of the page.
+	 */
+	boolean hasSnippet(String target) {
+		return target == null || pattern == null || snippets.containsKey(target);
+	}
+
+	/*
+	 * Returns the snippet of a result. Snippets are computed from the text
+	 * that the full-text index keeps of the document, unless the search has
+	 * already found one.
+	 */
+	Snippet getSnippet(String target) {
+		if (target == null || pattern == null)
+			return null;
+		Snippet snippet = snippets.get(target);
+		if (snippet == null) {
+			String text = fullTextIndex.getText(target);
+			snippet = (text != null) ? Snippet.find(new InterruptibleCharSequence(text, Thread.currentThread()::isInterrupted), pattern)
+					: null;
+			if (snippet == null)
+				snippet = Snippet.NONE;
+			snippets.put(target, snippet);
+		}
+		return (snippet != Snippet.NONE) ? snippet : null;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A match in the text of a document with some of its context.
+ */
+class Snippet {
+	static final Snippet NONE = new Snippet("", "", "");
+	private static final int CONTEXT = 40;
+	private static final String ELLIPSIS = "…";
+
+	private final String before;
+	private final String match;
+	private final String after;
+
+	private Snippet(String before, String match, String after) {
+		this.before = before;
+		this.match = match;
+		this.after = after;
+	}
+
+	/**
+	 * Returns the snippet around the first match of the pattern in the text
+	 * or null if the pattern does not match.
+	 */
+	static Snippet find(CharSequence text, Pattern pattern) {
+		Matcher matcher = pattern.matcher(text);
+		return matcher.find() ? around(text, matcher.start(), matcher.end()) : null;
+	}
+
+	static Snippet around(CharSequence text, int start, int end) {
+		String ellipsis = "";
+		if (end - start > 2 * CONTEXT) {
+			end = start + 2 * CONTEXT;
+			ellipsis = ELLIPSIS;
+		}
+		int from = Math.max(0, start - CONTEXT);
+		int to = Math.min(text.length(), end + CONTEXT);
+		// do not cut words in half
+		while (from > 0 && from < start && !Character.isWhitespace(text.charAt(from - 1)))
+			from++;
+		while (to < text.length() && to > end && !Character.isWhitespace(text.charAt(to)))
+			to--;
+		return new Snippet(((from > 0) ? ELLIPSIS : "") + clean(text.subSequence(from, start)),
+				clean(text.subSequence(start, end)) + ellipsis,
+				clean(text.subSequence(end, to)) + ((to < text.length()) ? ELLIPSIS : ""));
+	}
+
+	private static String clean(CharSequence s) {
+		return s.toString().replace('\n', ' ');
+	}
+
+	/**
+	 * Returns the snippet as HTML with the match in bold.
+	 */
+	public String toHtml() {
+		return escape(before) + "<b>" + escape(match) + "</b>" + escape(after);
+	}
+
+	static String escape(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '<')
+				sb.append("&lt;");
+			else if (c == '>')
+				sb.append("&gt;");
+			else if (c == '&')
+				sb.append("&amp;");
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return before + match + after;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.kovesdan.minihelp.xml.IndexEntry;
+import org.kovesdan.minihelp.xml.IndexItem;
+import org.kovesdan.minihelp.xml.TOCItem;
+
+/**
+ * Immutable lookup structure over the labels of the table of contents and
+ * the index. Every suffix of every word of every label is stored in a prefix
+ * trie, so a literal query is answered from the labels that have a word
+ * containing its first word instead of matching every label. The whole words
+ * are kept in a second trie for fuzzy lookups.
+ */
+class TitleIndex {
+	private final List<LinkInfo> labels = new ArrayList<>();
+	private final List<Double> boosts = new ArrayList<>();
+	private final PrefixTrie words;
+	private final PrefixTrie suffixes;
+
+	public TitleIndex(List<IndexItem> index, List<TOCItem> contents, double indexBoost, double tocBoost) {
+		for (IndexItem i : index)
+			addIndexItem(i, indexBoost);
+		for (TOCItem i : contents)
+			addTOCItem(i, tocBoost);
+
+		PrefixTrie.Builder wordBuilder = new PrefixTrie.Builder();
+		PrefixTrie.Builder suffixBuilder = new PrefixTrie.Builder();
+		for (int id = 0; id < labels.size(); id++) {
+			for (String word : FullTextIndex.tokenize(labels.get(id).getLabel())) {
+				wordBuilder.add(word, id);
+				for (int i = 0; i < word.length(); i++)
+					suffixBuilder.add(word.substring(i), id);
+			}
+		}
+		words = wordBuilder.build();
+		suffixes = suffixBuilder.build();
+	}
+
+	private void add(LinkInfo link, double boost) {
+		if (link.getLabel() == null)
+			return;
+		labels.add(link);
+		boosts.add(boost);
+	}
+
+	private void addIndexItem(IndexItem item, double boost) {
+		if (item.getTarget() != null && item.getText() != null)
+			add(new LinkInfo(item.getText().trim(), item.getTarget()), boost);
+		for (IndexItem i : item.getIndexItems())
+			addIndexItem(i, boost);
+		for (IndexEntry e : item.getIndexEntries())
+			add(new LinkInfo(e.getText(), e.getTarget()), boost);
+	}
+
+	private void addTOCItem(TOCItem item, double boost) {
+		add(new LinkInfo(item.getText(), item.getTarget()), boost);
+		for (TOCItem i : item.getTOCItems())
+			addTOCItem(i, boost);
+	}
+
+	/**
+	 * Returns whether a literal keyword can be looked up, that is whether it
+	 * has a word.
+	 */
+	public static boolean canAnswer(String keyword, boolean regex, boolean wholeWords) {
+		return !regex && !wholeWords && !FullTextIndex.tokenize(keyword).isEmpty();
+	}
+
+	/**
+	 * Returns the labels that the literal pattern of the keyword matches, with
+	 * the sum of their boosts. The keyword may start anywhere in a label, even
+	 * inside a word, so the candidates are the labels that have a word
+	 * containing the first word of the keyword.
+	 */
+	public Map<LinkInfo, Double> search(String keyword, Pattern pattern) {
+		Map<LinkInfo, Double> hits = new HashMap<>();
+		List<String> keywordWords = FullTextIndex.tokenize(keyword);
+		if (pattern == null || keywordWords.isEmpty())
+			return hits;
+		// a label is a candidate as many times as it has a matching word
+		BitSet seen = new BitSet(labels.size());
+		for (int id : suffixes.withPrefix(keywordWords.get(0))) {
+			if (seen.get(id))
+				continue;
+			seen.set(id);
+			LinkInfo link = labels.get(id);
+			if (pattern.matcher(link.getLabel()).find())
+				hits.merge(link, boosts.get(id), Double::sum);
+		}
+		return hits;
+	}
+
+	/**
+	 * Returns the words of the labels within the allowed edit distance of a
+	 * word, with their distance.
+	 */
+	public Map<String, Integer> expand(String word) {
+		return words.expand(new LevenshteinAutomaton(word));
+	}
+
+	/**
+	 * Returns the labels that have a word of each of the given expansions,
+	 * with the sum of their boosts.
+	 */
+	public Map<LinkInfo, Double> search(List<Map<String, Integer>> expansions) {
+		Map<LinkInfo, Double> hits = new HashMap<>();
+		BitSet matching = null;
+		for (Map<String, Integer> expansion : expansions) {
+			BitSet ids = new BitSet(labels.size());
+			for (String word : expansion.keySet())
+				for (int id : words.get(word))
+					ids.set(id);
+			if (matching == null)
+				matching = ids;
+			else
+				matching.and(ids);
+		}
+		if (matching != null)
+			for (int id = matching.nextSetBit(0); id >= 0; id = matching.nextSetBit(id + 1))
+				hits.merge(labels.get(id), boosts.get(id), Double::sum);
+		return hits;
+	}
+
+	public int size() {
+		return labels.size();
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the best scored items in a bounded heap. Items with equal scores
+ * are ranked by their natural order.
+ *
+ * @param <T>
+ *            the type of the collected items.
+ */
+class TopResults<T extends Comparable<? super T>> {
+
+	private static class Scored<T> {
+		final T item;
+		final double score;
+
+		Scored(T item, double score) {
+			this.item = item;
+			this.score = score;
+		}
+	}
+
+	private final int capacity;
+	private final Comparator<Scored<T>> ranking;
+	private final PriorityQueue<Scored<T>> heap;
+
+	public TopResults(int capacity) {
+		this.capacity = capacity;
+		Comparator<Scored<T>> byScore = (a, b) -> Double.compare(b.score, a.score);
+		this.ranking = byScore.thenComparing((a, b) -> a.item.compareTo(b.item));
+		// the worst of the collected items is at the head of the heap
+		this.heap = new PriorityQueue<>(Math.min(capacity, 1024) + 1, ranking.reversed());
+	}
+
+	public void add(T item, double score) {
+		Scored<T> scored = new Scored<>(item, score);
+		if (heap.size() < capacity) {
+			heap.add(scored);
+		} else if (ranking.compare(scored, heap.peek()) < 0) {
+			heap.poll();
+			heap.add(scored);
+		}
+	}
+
+	public int size() {
+		return heap.size();
+	}
+
+	/**
+	 * Returns the collected items, the best one first.
+	 */
+	public List<T> toList() {
+		List<Scored<T>> sorted = new ArrayList<>(heap);
+		Collections.sort(sorted, ranking);
+		List<T> result = new ArrayList<>(sorted.size());
+		for (Scored<T> s : sorted)
+			result.add(s.item);
+		return result;
+	}
+}
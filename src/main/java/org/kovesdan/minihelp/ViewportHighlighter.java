@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.JTextPane;
+import javax.swing.JViewport;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+import javax.swing.text.Highlighter.HighlightPainter;
+
+/**
+ * Highlights the matches of a pattern in a text pane that is shown in a
+ * viewport. The matches are computed once and cached for each document but
+ * only the ones in the visible region and a margin of one viewport height
+ * above and below it are installed as highlights. The installed highlights
+ * are updated incrementally as the viewport scrolls.
+ */
+class ViewportHighlighter {
+	private final JTextPane pane;
+	private final JViewport viewport;
+	private final HighlightPainter painter = new MiniHelpHighlightPainter(Color.YELLOW);
+	private final Map<Document, Matches> cache = new WeakHashMap<>();
+	private Pattern pattern;
+	private Matches matches;
+	private Object[] installed = new Object[0];
+	private int from;
+	private int to;
+
+	/*
+	 * The matches of a pattern in a document, in the order of their
+	 * position.
+	 */
+	private static class Matches {
+		final String regex;
+		final int flags;
+		final int length;
+		final int[] starts;
+		final int[] ends;
+
+		Matches(Pattern pattern, Document doc) throws BadLocationException {
+			regex = pattern.pattern();
+			flags = pattern.flags();
+			length = doc.getLength();
+			int[] s = new int[16];
+			int[] e = new int[16];
+			int n = 0;
+			Matcher matcher = pattern.matcher(doc.getText(0, length));
+			while (matcher.find()) {
+				if (matcher.start() == matcher.end())
+					continue;
+				if (n == s.length) {
+					s = Arrays.copyOf(s, n * 2);
+					e = Arrays.copyOf(e, n * 2);
+				}
+				s[n] = matcher.start();
+				e[n] = matcher.end();
+				n++;
+			}
+			starts = Arrays.copyOf(s, n);
+			ends = Arrays.copyOf(e, n);
+		}
+
+		boolean isFor(Pattern pattern, Document doc) {
+			return regex.equals(pattern.pattern()) && flags == pattern.flags() && length == doc.getLength();
+		}
+	}
+
+	public ViewportHighlighter(JTextPane pane, JViewport viewport) {
+		this.pane = pane;
+		this.viewport = viewport;
+		viewport.addChangeListener(e -> update());
+	}
+
+	/**
+	 * Highlights the matches of a pattern in the document of the pane, or
+	 * removes the highlights if the pattern is null.
+	 */
+	public void setPattern(Pattern pattern) {
+		this.pattern = pattern;
+		refresh();
+	}
+
+	/**
+	 * Recomputes the highlights after the document of the pane has been
+	 * replaced.
+	 */
+	public void refresh() {
+		clear();
+		matches = null;
+		if (pattern == null)
+			return;
+		Document doc = pane.getDocument();
+		matches = cache.get(doc);
+		try {
+			if (matches == null || !matches.isFor(pattern, doc)) {
+				matches = new Matches(pattern, doc);
+				cache.put(doc, matches);
+			}
+		} catch (BadLocationException e) {
+			matches = null;
+			return;
+		}
+		installed = new Object[matches.starts.length];
+		update();
+	}
+
+	/**
+	 * Returns the number of matches in the displayed document.
+	 */
+	public int getMatchCount() {
+		return (matches != null) ? matches.starts.length : 0;
+	}
+
+	/**
+	 * Returns the number of highlights that are currently installed.
+	 */
+	public int getInstalledCount() {
+		return to - from;
+	}
+
+	/*
+	 * Installs the highlights of the matches in the visible region and the
+	 * margin and removes the ones that have left it.
+	 */
+	private void update() {
+		if (matches == null || matches.starts.length == 0)
+			return;
+		Rectangle visible = viewport.getViewRect();
+		if (visible.isEmpty())
+			return;
+		int margin = visible.height;
+		int start = pane.viewToModel(new Point(0, Math.max(0, visible.y - margin)));
+		int end = pane.viewToModel(new Point(visible.x + visible.width, visible.y + visible.height + margin));
+		if (start < 0 || end < 0)
+			return;
+		if (start > end) {
+			int tmp = start;
+			start = end;
+			end = tmp;
+		}
+		int newFrom = lowerBound(matches.ends, start);
+		int newTo = lowerBound(matches.starts, end + 1);
+		if (newFrom >= newTo)
+			newFrom = newTo = 0;
+
+		Highlighter highlighter = pane.getHighlighter();
+		for (int i = from; i < to; i++)
+			if ((i < newFrom || i >= newTo) && installed[i] != null) {
+				highlighter.removeHighlight(installed[i]);
+				installed[i] = null;
+			}
+		try {
+			for (int i = newFrom; i < newTo; i++)
+				if (installed[i] == null)
+					installed[i] = highlighter.addHighlight(matches.starts[i], matches.ends[i], painter);
+		} catch (BadLocationException e) {
+		}
+		from = newFrom;
+		to = newTo;
+	}
+
+	private void clear() {
+		Highlighter highlighter = pane.getHighlighter();
+		for (int i = from; i < to; i++)
+			if (installed[i] != null)
+				highlighter.removeHighlight(installed[i]);
+		installed = new Object[0];
+		from = to = 0;
+	}
+
+	/*
+	 * Returns the index of the first element that is not less than the key.
+	 */
+	private static int lowerBound(int[] a, int key) {
+		int lo = 0;
+		int hi = a.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (a[mid] < key)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.awt.Font;
+
+import javax.swing.text.Document;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import javax.swing.text.html.StyleSheet;
+
+/**
+ * An HTML editor kit with a zoom factor. The documents that it creates
+ * scale every font that their style sheet resolves, so the zoom applies to
+ * every page and changing it restyles the displayed page in one pass
+ * instead of rewriting the attributes of its elements.
+ */
+class ZoomableEditorKit extends HTMLEditorKit {
+	private static final long serialVersionUID = 1L;
+	static final float MIN_ZOOM = 0.25f;
+	static final float MAX_ZOOM = 4f;
+
+	private volatile float zoom = 1f;
+
+	/*
+	 * A style sheet that scales the fonts by the zoom factor of the kit. The
+	 * scaled fonts are cached by the style context like the other ones.
+	 */
+	private class ZoomStyleSheet extends StyleSheet {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Font getFont(String family, int style, int size) {
+			return super.getFont(family, style, Math.max(1, Math.round(size * zoom)));
+		}
+	}
+
+	static class ZoomableDocument extends HTMLDocument {
+		private static final long serialVersionUID = 1L;
+
+		ZoomableDocument(StyleSheet styles) {
+			super(styles);
+		}
+
+		/*
+		 * Makes the views fetch their fonts again. The change notification is
+		 * posted on the event queue, so several changes in a row only
+		 * restyle the document once.
+		 */
+		void zoomChanged() {
+			styleChanged(null);
+		}
+	}
+
+	@Override
+	public Document createDefaultDocument() {
+		StyleSheet styles = new ZoomStyleSheet();
+		styles.addStyleSheet(getStyleSheet());
+		HTMLDocument doc = new ZoomableDocument(styles);
+		doc.setParser(getParser());
+		doc.setAsynchronousLoadPriority(4);
+		doc.setTokenThreshold(100);
+		return doc;
+	}
+
+	public float getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * Sets the zoom factor, limited to the range between
+	 * {@link #MIN_ZOOM} and {@link #MAX_ZOOM}, and restyles the given
+	 * document if it has been created by this kit.
+	 */
+	public void setZoom(float zoom, Document displayed) {
+		this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+		if (displayed instanceof ZoomableDocument)
+			((ZoomableDocument) displayed).zoomChanged();
+	}
+}
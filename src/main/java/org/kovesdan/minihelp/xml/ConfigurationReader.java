@@ -29,23 +29,140 @@
 package org.kovesdan.minihelp.xml;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.nio.file.Path;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.adapters.CollapsedStringAdapter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
- * Helper class to easily parser the configuration data.
+ * Helper class to easily parser the configuration data. The configuration is
+ * read in a single streaming pass that builds the configuration objects
+ * directly, without creating a JAXB context or an intermediate tree.
  * 
  * @author Gábor Kövesdán
  *
  */
 public class ConfigurationReader {
-	private static Object parseObject(File file, Class<?> c) throws JAXBException {
-		JAXBContext ctx = JAXBContext.newInstance(c);
-		Unmarshaller unmarshaller = ctx.createUnmarshaller();
-		return (Object) unmarshaller.unmarshal(file);
+	private static final XMLInputFactory FACTORY = createFactory();
+	// IDs and references have their whitespace collapsed, as JAXB did
+	private static final CollapsedStringAdapter ID_ADAPTER = new CollapsedStringAdapter();
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+
+	private static Configuration read(InputStream in, String systemId) throws JAXBException {
+		XMLStreamReader reader = null;
+		try {
+			synchronized (FACTORY) {
+				reader = FACTORY.createXMLStreamReader(systemId, in);
+			}
+			reader.nextTag();
+			reader.require(XMLStreamConstants.START_ELEMENT, null, "minihelp");
+			return readConfiguration(reader);
+		} catch (XMLStreamException e) {
+			throw new JAXBException(e.getMessage(), e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+				}
+			}
+		}
+	}
+
+	private static Configuration readConfiguration(XMLStreamReader reader) throws XMLStreamException {
+		Configuration configuration = new Configuration();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+			case "title":
+				configuration.setTitle(reader.getElementText());
+				break;
+			case "homeID":
+				configuration.setHomeID(ID_ADAPTER.unmarshal(reader.getElementText()));
+				break;
+			case "map":
+				DocumentMapping mapping = new DocumentMapping();
+				mapping.setTarget(ID_ADAPTER.unmarshal(reader.getAttributeValue(null, "target")));
+				mapping.setUrl(reader.getAttributeValue(null, "url"));
+				configuration.getDocumentMappings().add(mapping);
+				skip(reader);
+				break;
+			case "tocitem":
+				configuration.getTOCItems().add(readTOCItem(reader));
+				break;
+			case "indexitem":
+				configuration.getIndexItems().add(readIndexItem(reader));
+				break;
+			default:
+				skip(reader);
+			}
+		}
+		return configuration;
+	}
+
+	private static TOCItem readTOCItem(XMLStreamReader reader) throws XMLStreamException {
+		TOCItem item = new TOCItem();
+		item.setText(reader.getAttributeValue(null, "text"));
+		item.setImage(reader.getAttributeValue(null, "image"));
+		item.setTarget(ID_ADAPTER.unmarshal(reader.getAttributeValue(null, "target")));
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			if (reader.getLocalName().equals("tocitem"))
+				item.getTOCItems().add(readTOCItem(reader));
+			else
+				skip(reader);
+		}
+		return item;
+	}
+
+	private static IndexItem readIndexItem(XMLStreamReader reader) throws XMLStreamException {
+		IndexItem item = new IndexItem();
+		item.setText(reader.getAttributeValue(null, "text"));
+		item.setTarget(reader.getAttributeValue(null, "target"));
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+			case "indexitem":
+				item.getIndexItems().add(readIndexItem(reader));
+				break;
+			case "indexentry":
+				IndexEntry entry = new IndexEntry();
+				entry.setText(reader.getAttributeValue(null, "text"));
+				entry.setTarget(reader.getAttributeValue(null, "target"));
+				item.getIndexEntries().add(entry);
+				skip(reader);
+				break;
+			default:
+				skip(reader);
+			}
+		}
+		return item;
+	}
+
+	/*
+	 * Skips the current element with its content.
+	 */
+	private static void skip(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
 	}
 
 	/**
@@ -58,7 +175,11 @@ public class ConfigurationReader {
 	 *             when the configuration file in not well-formed or invalid.
 	 */
 	public static Configuration parseConfiguration(File file) throws JAXBException {
-		return (Configuration) parseObject(file, Configuration.class);
+		try (InputStream in = new FileInputStream(file)) {
+			return read(in, file.toURI().toString());
+		} catch (IOException e) {
+			throw new JAXBException(e.getMessage(), e);
+		}
 	}
 
 	/**
@@ -71,6 +192,38 @@ public class ConfigurationReader {
 	 *             when the configuration file in not well-formed or invalid.
 	 */
 	public static Configuration parseConfiguration(Path path) throws JAXBException {
-		return (Configuration) parseObject(path.toFile(), Configuration.class);
+		return parseConfiguration(path.toFile());
+	}
+
+	/**
+	 * Parses the configuration from a given URL, for example from a helpset
+	 * packaged in a jar.
+	 * 
+	 * @param url
+	 *            the URL of the configuration file to parse.
+	 * @return an object representing the parsed configuration.
+	 * @throws JAXBException
+	 *             when the configuration file cannot be read, is not
+	 *             well-formed or invalid.
+	 */
+	public static Configuration parseConfiguration(URL url) throws JAXBException {
+		try (InputStream in = url.openStream()) {
+			return read(in, url.toString());
+		} catch (IOException e) {
+			throw new JAXBException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Parses the configuration from a stream. The stream is not closed.
+	 * 
+	 * @param in
+	 *            the stream of the configuration file to parse.
+	 * @return an object representing the parsed configuration.
+	 * @throws JAXBException
+	 *             when the configuration file in not well-formed or invalid.
+	 */
+	public static Configuration parseConfiguration(InputStream in) throws JAXBException {
+		return read(in, null);
 	}
 }
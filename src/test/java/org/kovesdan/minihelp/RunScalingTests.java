@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Measures how loading and searching scale with the size of the helpsets,
+ * without displaying anything. Every scenario generates its helpsets with
+ * {@link SyntheticHelpset}, builds their full-text indexes, loads them the
+ * same way as the help window and runs searches for words drawn from the
+ * same distribution as the text, one at a time and from many threads.
+ * <p>
+ * The scenarios may be given as arguments like
+ * {@code helpsets=20,pages=1000,depth=3,index=2500}; by default a large
+ * helpset, a large index and many merged helpsets are measured.
+ */
+public class RunScalingTests {
+	private static final int QUERIES = 500;
+	private static final int FUZZY_QUERIES = 100;
+	private static final int CONCURRENT_CALLERS = 32;
+
+	private int helpsets = 1;
+	private int pages = 1000;
+	private int depth = 3;
+	private int indexTerms = 1000;
+
+	private RunScalingTests(String scenario) {
+		for (String parameter : scenario.split(",")) {
+			String[] kv = parameter.split("=");
+			int value = Integer.parseInt(kv[1]);
+			switch (kv[0]) {
+			case "helpsets":
+				helpsets = value;
+				break;
+			case "pages":
+				pages = value;
+				break;
+			case "depth":
+				depth = value;
+				break;
+			case "index":
+				indexTerms = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown parameter: " + kv[0]);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return helpsets + " helpset(s), " + pages + " pages, TOC depth " + depth + ", " + indexTerms
+				+ " index terms each";
+	}
+
+	private void run() throws IOException, JAXBException, SAXException, InterruptedException, ExecutionException {
+		System.out.println(this);
+		Path dir = Files.createTempDirectory("minihelp-scaling");
+		try {
+			List<SyntheticHelpset> sources = SyntheticHelpset.createHelpsets(helpsets, pages, depth, indexTerms);
+			List<Helpset> unloaded = new ArrayList<>();
+			long start = System.nanoTime();
+			for (int i = 0; i < sources.size(); i++) {
+				File config = sources.get(i).write(new File(dir.toFile(), "h" + i));
+				if (i == 0)
+					validate(config);
+				HelpsetIndexer.index(sources.get(i).getConfiguration(), config.getParentFile().toURI(),
+						new File(config.getParentFile(), MappedIndexSegment.FILE_NAME));
+				unloaded.add(new Helpset(config.toURI().toURL(), config.getParentFile().toURI()));
+			}
+			report("generate and index", System.nanoTime() - start);
+
+			long before = usedMemory();
+			start = System.nanoTime();
+			HelpsetContents contents = new HelpsetContents();
+			contents.add(unloaded);
+			IndexListModel indexModel = new IndexListModel();
+			indexModel.setIndex(contents.indexes);
+			SearchEngine engine = new SearchEngine(contents);
+			report("load", System.nanoTime() - start);
+			long after = usedMemory();
+			System.out.printf("  %-24s %10.1f MB (%d documents, %d index rows)%n", "memory", (after - before) / 1e6,
+					engine.getPageCount(), indexModel.getSize());
+
+			searches(contents, engine, sources.get(0));
+			concurrentSearches(engine, sources.get(0));
+			// keeps the loaded helpsets reachable until the memory is measured
+			contents.mappedContent.clear();
+		} finally {
+			try (Stream<Path> walk = Files.walk(dir)) {
+				for (Path p : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+					Files.delete(p);
+			}
+		}
+	}
+
+	private static void searches(HelpsetContents contents, SearchEngine engine, SyntheticHelpset source) {
+		Random random = new Random(42);
+		long[] literal = new long[QUERIES];
+		long[] titles = new long[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			String keyword = source.word(random);
+			if (random.nextInt(10) < 3)
+				keyword += " " + source.word(random);
+			long start = System.nanoTime();
+			contents.fullTextIndex.search(keyword);
+			literal[i] = System.nanoTime() - start;
+			start = System.nanoTime();
+			engine.search(new SearchQuery(keyword));
+			titles[i] = System.nanoTime() - start;
+		}
+		long[] fuzzy = new long[FUZZY_QUERIES];
+		for (int i = 0; i < FUZZY_QUERIES; i++) {
+			String word = source.word(random);
+			String typo = word.substring(0, word.length() / 2) + word.substring(word.length() / 2 + 1);
+			long start = System.nanoTime();
+			List<Map<String, Integer>> expansions = new ArrayList<>();
+			expansions.add(contents.fullTextIndex.expand(typo));
+			contents.fullTextIndex.search(expansions);
+			fuzzy[i] = System.nanoTime() - start;
+		}
+		latencies("literal search", literal);
+		latencies("title search", titles);
+		latencies("fuzzy search", fuzzy);
+	}
+
+	/*
+	 * Runs full-text searches from many threads at once on the same engine,
+	 * the way a server shares one engine between its requests.
+	 */
+	private static void concurrentSearches(SearchEngine engine, SyntheticHelpset source)
+			throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CALLERS);
+		try {
+			List<Callable<Long>> calls = new ArrayList<>();
+			Random random = new Random(7);
+			for (int i = 0; i < QUERIES; i++) {
+				SearchQuery query = new SearchQuery(source.word(random)).withFullText(true);
+				calls.add(() -> {
+					long start = System.nanoTime();
+					engine.search(query);
+					return System.nanoTime() - start;
+				});
+			}
+			long start = System.nanoTime();
+			List<Future<Long>> futures = executor.invokeAll(calls);
+			long elapsed = System.nanoTime() - start;
+			long[] nanos = new long[futures.size()];
+			for (int i = 0; i < nanos.length; i++)
+				nanos[i] = futures.get(i).get();
+			latencies(CONCURRENT_CALLERS + " concurrent", nanos);
+			System.out.printf("  %-24s %10.1f queries/s%n", "throughput", nanos.length / (elapsed / 1e9));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void validate(File config) throws SAXException, IOException {
+		SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+		factory.newSchema(new File("src/main/xsd/minihelp.xsd")).newValidator()
+				.validate(new StreamSource(config));
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void report(String what, long nanos) {
+		System.out.printf("  %-24s %10.1f ms%n", what, nanos / 1e6);
+	}
+
+	private static void latencies(String what, long[] nanos) {
+		Arrays.sort(nanos);
+		System.out.printf("  %-24s p50 %7.3f ms  p95 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n", what,
+				nanos[nanos.length / 2] / 1e6, nanos[nanos.length * 95 / 100] / 1e6,
+				nanos[nanos.length * 99 / 100] / 1e6, nanos[nanos.length - 1] / 1e6);
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		String[] scenarios = (args.length > 0) ? args
+				: new String[] { "pages=10000,depth=4,index=5000", "pages=1000,depth=3,index=50000",
+						"helpsets=20,pages=1000,depth=3,index=2500" };
+		for (String scenario : scenarios)
+			new RunScalingTests(scenario).run();
+	}
+}
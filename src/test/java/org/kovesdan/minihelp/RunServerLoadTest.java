@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Starts {@link MiniHelpServer} on localhost with a generated helpset, checks
+ * its responses and then sends requests from many clients at once: pages,
+ * revalidations of the table of contents and full-text searches. Reports
+ * the latencies of each kind of request and the throughput.
+ * <p>
+ * The load may be given as arguments like
+ * {@code clients=200,requests=50,pages=2000}.
+ */
+public class RunServerLoadTest {
+	private static final long SEARCH_TIMEOUT = 2000;
+	private int clients = 200;
+	private int requests = 50;
+	private int pages = 2000;
+
+	private final AtomicInteger errors = new AtomicInteger();
+	private String base;
+	private SyntheticHelpset source;
+
+	private RunServerLoadTest(String[] args) {
+		for (String arg : args) {
+			for (String parameter : arg.split(",")) {
+				String[] kv = parameter.split("=");
+				int value = Integer.parseInt(kv[1]);
+				switch (kv[0]) {
+				case "clients":
+					clients = value;
+					break;
+				case "requests":
+					requests = value;
+					break;
+				case "pages":
+					pages = value;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown parameter: " + kv[0]);
+				}
+			}
+		}
+	}
+
+	private static class Response {
+		int status;
+		String location;
+		String etag;
+		String encoding;
+		String body;
+	}
+
+	private void run() throws Exception {
+		Path dir = Files.createTempDirectory("minihelp-server");
+		MiniHelpServer server = null;
+		try {
+			source = new SyntheticHelpset(pages, 3, 1000);
+			File config = source.write(dir.toFile());
+			HelpsetIndexer.index(source.getConfiguration(), config.getParentFile().toURI(),
+					new File(config.getParentFile(), MappedIndexSegment.FILE_NAME));
+			MiniHelpFactory factory = new MiniHelpFactory();
+			factory.addHelpset(config.toURI().toURL(), config.getParentFile().toURI());
+			server = factory.getMiniHelpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			server.setSearchTimeout(SEARCH_TIMEOUT);
+			server.start();
+			base = "http://localhost:" + server.getPort();
+
+			check();
+			load();
+		} finally {
+			if (server != null)
+				server.stop();
+			try (Stream<Path> walk = Files.walk(dir)) {
+				for (Path p : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+					Files.delete(p);
+			}
+		}
+	}
+
+	private void check() throws IOException {
+		System.out.println("Checks");
+		String target = source.getTarget(1);
+		Response home = get("/", null, null);
+		expect("home redirects", home.status == 302 && home.location.startsWith("/pages/"));
+		Response page = get("/pages/" + target, null, null);
+		expect("page redirects into its helpset", page.status == 302 && page.location.startsWith("/files/0/"));
+		Response file = get(page.location, null, null);
+		expect("page is served", file.status == 200 && file.body.contains("<html") && file.etag != null);
+		expect("page is compressed", "gzip".equals(file.encoding));
+		expect("page is revalidated", get(page.location, file.etag, null).status == 304);
+		Response toc = get("/api/toc", null, null);
+		expect("table of contents is JSON", toc.status == 200 && toc.body.startsWith("[{\"text\":"));
+		expect("table of contents is revalidated", get("/api/toc", toc.etag, null).status == 304);
+		expect("index is JSON", get("/api/index", null, null).body.startsWith("["));
+		String word = source.getText(1).split(" ")[0];
+		Response search = get("/api/search?fullText=true&q=" + word, null, null);
+		expect("search finds the page", search.status == 200 && search.body.contains("\"target\":\"" + target + "\""));
+		expect("search without keyword is rejected", get("/api/search", null, null).status == 400);
+		long start = System.nanoTime();
+		Response backtracking = get("/api/search?regex=true&fullText=true&q=" + URLEncoder.encode("(.*.*)*#", "UTF-8"),
+				null, null);
+		expect("backtracking search is stopped", backtracking.status == 503
+				&& System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(3 * SEARCH_TIMEOUT));
+		expect("unknown page is not found", get("/pages/no-such-target", null, null).status == 404);
+		expect("parent directory is not served", get("/files/0/%2e%2e/secret", null, null).status == 404);
+		expect("other methods are not allowed", get("/api/toc", null, "POST").status == 405);
+	}
+
+	private void expect(String what, boolean passed) {
+		System.out.printf("  %-40s %s%n", what, passed ? "ok" : "FAILED");
+		if (!passed)
+			errors.incrementAndGet();
+	}
+
+	/*
+	 * Every client sends its requests in sequence, like a browser that shows
+	 * pages and searches. The clients start at the same time.
+	 */
+	private void load() throws Exception {
+		System.out.println(clients + " clients, " + requests + " requests each");
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		try {
+			String tocTag = get("/api/toc", null, null).etag;
+			List<Callable<long[][]>> calls = new ArrayList<>();
+			for (int c = 0; c < clients; c++) {
+				Random random = new Random(c);
+				calls.add(() -> {
+					long[][] nanos = new long[3][requests];
+					for (int i = 0; i < requests; i++) {
+						int kind = random.nextInt(10) < 4 ? 0 : random.nextInt(10) < 7 ? 2 : 1;
+						String path;
+						if (kind == 0)
+							path = "/files/0/" + source.getTarget(random.nextInt(pages)) + ".html";
+						else if (kind == 1)
+							path = "/api/toc";
+						else
+							path = "/api/search?fullText=true&q=" + source.word(random);
+						long start = System.nanoTime();
+						Response r = get(path, (kind == 1) ? tocTag : null, null);
+						nanos[kind][i] = System.nanoTime() - start;
+						if (r.status != 200 && r.status != 304)
+							errors.incrementAndGet();
+					}
+					return nanos;
+				});
+			}
+			long start = System.nanoTime();
+			List<Future<long[][]>> futures = executor.invokeAll(calls);
+			long elapsed = System.nanoTime() - start;
+			String[] kinds = { "page", "toc revalidation", "full-text search" };
+			for (int kind = 0; kind < kinds.length; kind++) {
+				List<Long> all = new ArrayList<>();
+				for (Future<long[][]> f : futures)
+					for (long n : f.get()[kind])
+						if (n > 0)
+							all.add(n);
+				latencies(kinds[kind], all.stream().mapToLong(Long::longValue).toArray());
+			}
+			System.out.printf("  %-24s %10.1f requests/s%n", "throughput", clients * requests / (elapsed / 1e9));
+			System.out.printf("  %-24s %10d%n", "errors", errors.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Response get(String path, String etag, String method) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		if (etag != null)
+			connection.setRequestProperty("If-None-Match", etag);
+		if (method != null)
+			connection.setRequestMethod(method);
+		Response response = new Response();
+		response.status = connection.getResponseCode();
+		response.location = connection.getHeaderField("Location");
+		response.etag = connection.getHeaderField("ETag");
+		response.encoding = connection.getContentEncoding();
+		InputStream in = (response.status < 400) ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			if ("gzip".equals(response.encoding))
+				in = new GZIPInputStream(in);
+			try (InputStream body = in) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = body.read(buffer)) > 0)
+					out.write(buffer, 0, n);
+				response.body = out.toString("UTF-8");
+			}
+		}
+		return response;
+	}
+
+	private static void latencies(String what, long[] nanos) {
+		if (nanos.length == 0)
+			return;
+		Arrays.sort(nanos);
+		System.out.printf("  %-24s p50 %7.3f ms  p95 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n", what,
+				nanos[nanos.length / 2] / 1e6, nanos[nanos.length * 95 / 100] / 1e6,
+				nanos[nanos.length * 99 / 100] / 1e6, nanos[nanos.length - 1] / 1e6);
+	}
+
+	public static void main(String[] args) throws Exception {
+		RunServerLoadTest test = new RunServerLoadTest(args);
+		test.run();
+		if (test.errors.get() > 0)
+			System.exit(1);
+	}
+}
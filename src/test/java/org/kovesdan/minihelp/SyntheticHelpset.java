@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2016 Gábor Kövesdán
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.kovesdan.minihelp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+
+import org.kovesdan.minihelp.xml.Configuration;
+import org.kovesdan.minihelp.xml.ConfigurationReader;
+
+/**
+ * Generates a helpset of a given size: the configuration with a table of
+ * contents of a given depth and index terms, and an HTML page for each
+ * target. The words of the pages and the index follow a Zipfian distribution
+ * like natural text, so a few words are very common and most of them are
+ * rare, and the pages link to each other. The configuration maps every
+ * target explicitly, so that it is valid against {@code minihelp.xsd}. The
+ * same parameters and seed always generate the same helpset, so measurements
+ * can be compared across commits.
+ */
+public class SyntheticHelpset {
+	private static final String[] SYLLABLES = { "ka", "lo", "mi", "ne", "su", "ta", "ri", "po", "de", "gu", "an",
+			"el", "or", "is", "ul", "ba", "fe", "zo", "hi", "ve" };
+
+	private final int pages;
+	private final int tocDepth;
+	private final int indexTerms;
+	private long seed = 1;
+	private int wordsPerPage = 300;
+	private int vocabularySize = 5000;
+	private String prefix = "";
+	private double zipfExponent = 1.0;
+	private int linksPerPage = 5;
+	private boolean mapTargets = true;
+
+	private String[] vocabulary;
+	private double[] cumulativeWeights;
+
+	/**
+	 * @param pages
+	 *            the number of pages, each of which is a target in the
+	 *            table of contents.
+	 * @param tocDepth
+	 *            the number of levels of the table of contents.
+	 * @param indexTerms
+	 *            the number of top-level index terms.
+	 */
+	public SyntheticHelpset(int pages, int tocDepth, int indexTerms) {
+		this.pages = pages;
+		this.tocDepth = Math.max(1, tocDepth);
+		this.indexTerms = indexTerms;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setWordsPerPage(int wordsPerPage) {
+		this.wordsPerPage = wordsPerPage;
+	}
+
+	public void setVocabularySize(int vocabularySize) {
+		this.vocabularySize = vocabularySize;
+		vocabulary = null;
+		cumulativeWeights = null;
+	}
+
+	/**
+	 * Sets the exponent of the Zipfian distribution of the words: the word
+	 * of rank k occurs with a frequency proportional to 1/k^exponent. With
+	 * 0, all the words are equally frequent.
+	 */
+	public void setZipfExponent(double zipfExponent) {
+		this.zipfExponent = zipfExponent;
+		cumulativeWeights = null;
+	}
+
+	public void setLinksPerPage(int linksPerPage) {
+		this.linksPerPage = linksPerPage;
+	}
+
+	/**
+	 * Sets whether every target is mapped explicitly in the configuration.
+	 * Otherwise the pages are found by the default mapping, which looks for
+	 * them on the disk.
+	 */
+	public void setMapTargets(boolean mapTargets) {
+		this.mapTargets = mapTargets;
+	}
+
+	/**
+	 * Sets the prefix of the targets, so that several generated helpsets can
+	 * be merged without sharing targets.
+	 */
+	public void setTargetPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
+	public int getPages() {
+		return pages;
+	}
+
+	public String getTarget(int page) {
+		return prefix + "page" + page;
+	}
+
+	/**
+	 * Returns the words that the pages and the index terms are made of. The
+	 * vocabulary only depends on its size, so helpsets generated with
+	 * different seeds share their words.
+	 */
+	public String[] getVocabulary() {
+		if (vocabulary == null) {
+			Random r = new Random(vocabularySize);
+			vocabulary = new String[vocabularySize];
+			Set<String> used = new HashSet<>();
+			for (int i = 0; i < vocabularySize; i++) {
+				String word;
+				do {
+					StringBuilder sb = new StringBuilder();
+					int syllables = 2 + r.nextInt(3);
+					for (int j = 0; j < syllables; j++)
+						sb.append(SYLLABLES[r.nextInt(SYLLABLES.length)]);
+					word = sb.toString();
+				} while (!used.add(word));
+				vocabulary[i] = word;
+			}
+		}
+		return vocabulary;
+	}
+
+	/**
+	 * Returns a random word of the vocabulary, following the Zipfian
+	 * distribution. The vocabulary is ordered by rank.
+	 */
+	public String word(Random r) {
+		String[] words = getVocabulary();
+		if (zipfExponent == 0)
+			return words[r.nextInt(words.length)];
+		if (cumulativeWeights == null) {
+			double[] weights = new double[words.length];
+			double sum = 0;
+			for (int i = 0; i < words.length; i++) {
+				sum += 1 / Math.pow(i + 1, zipfExponent);
+				weights[i] = sum;
+			}
+			cumulativeWeights = weights;
+		}
+		double x = r.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+		int i = Arrays.binarySearch(cumulativeWeights, x);
+		return words[Math.min(words.length - 1, (i < 0) ? -i - 1 : i)];
+	}
+
+	private String words(Random r, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				sb.append(' ');
+			sb.append(word(r));
+		}
+		return sb.toString();
+	}
+
+	private String title(int page) {
+		return words(new Random(seed * 31 + page), 3);
+	}
+
+	/**
+	 * Returns the configuration file of the helpset.
+	 */
+	public String getConfigurationXml() {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<minihelp>\n");
+		sb.append("<title>Synthetic helpset ").append(prefix).append("</title>\n");
+		sb.append("<homeID>").append(getTarget(0)).append("</homeID>\n");
+		if (mapTargets)
+			for (int i = 0; i < pages; i++)
+				sb.append("<map target=\"").append(getTarget(i)).append("\" url=\"").append(getTarget(i))
+						.append(".html\"/>\n");
+		appendTOC(sb, 0, pages, 1);
+		for (int i = 0; i < indexTerms; i++) {
+			sb.append("<indexitem text=\"").append(words(random, 1 + random.nextInt(2))).append('"');
+			if (i % 4 != 0) {
+				sb.append(" target=\"").append(getTarget(random.nextInt(pages))).append("\"/>\n");
+			} else {
+				sb.append(">\n");
+				for (int j = 0; j < 3; j++)
+					sb.append("  <indexentry text=\"").append(words(random, 2)).append("\" target=\"")
+							.append(getTarget(random.nextInt(pages))).append("\"/>\n");
+				sb.append("</indexitem>\n");
+			}
+		}
+		sb.append("</minihelp>\n");
+		return sb.toString();
+	}
+
+	/*
+	 * Lays out the pages from..to as a subtree of the table of contents in
+	 * preorder. Each level divides the remaining pages evenly, so that the
+	 * tree reaches the requested depth.
+	 */
+	private void appendTOC(StringBuilder sb, int from, int to, int level) {
+		int count = to - from;
+		if (count <= 0)
+			return;
+		int fanout = Math.max(1, (int) Math.ceil(Math.pow(count, 1.0 / (tocDepth - level + 1))));
+		int chunk = (count + fanout - 1) / fanout;
+		for (int start = from; start < to; start += chunk) {
+			int end = Math.min(to, start + chunk);
+			sb.append("<tocitem text=\"").append(title(start)).append("\" target=\"").append(getTarget(start))
+					.append('"');
+			if (end - start > 1 && level < tocDepth) {
+				sb.append(">\n");
+				appendTOC(sb, start + 1, end, level + 1);
+				sb.append("</tocitem>\n");
+			} else {
+				sb.append("/>\n");
+				for (int p = start + 1; p < end; p++)
+					sb.append("<tocitem text=\"").append(title(p)).append("\" target=\"").append(getTarget(p))
+							.append("\"/>\n");
+			}
+		}
+	}
+
+	/**
+	 * Returns the parsed configuration of the helpset.
+	 */
+	public Configuration getConfiguration() throws JAXBException {
+		return ConfigurationReader.parseConfiguration(
+				new ByteArrayInputStream(getConfigurationXml().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/*
+	 * Returns the paragraphs of a page. The links to other pages are spread
+	 * over the first paragraphs.
+	 */
+	private List<String> paragraphs(int page) {
+		Random r = new Random(seed * 17 + page);
+		List<String> paragraphs = new ArrayList<>();
+		for (int written = 0; written < wordsPerPage; written += 12) {
+			StringBuilder sb = new StringBuilder(words(r, Math.min(12, wordsPerPage - written)));
+			if (paragraphs.size() < linksPerPage && pages > 1) {
+				int target = r.nextInt(pages);
+				sb.append(" <a href=\"").append(getTarget(target)).append(".html\">").append(title(target))
+						.append("</a>");
+			}
+			paragraphs.add(sb.toString());
+		}
+		return paragraphs;
+	}
+
+	/**
+	 * Returns the text of a page, without markup.
+	 */
+	public String getText(int page) {
+		StringBuilder sb = new StringBuilder(title(page));
+		for (String paragraph : paragraphs(page))
+			sb.append('\n').append(paragraph.replaceAll("<[^>]*>", ""));
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a page as an HTML document.
+	 */
+	public String getPage(int page) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html>\n<head><title>").append(title(page)).append("</title></head>\n<body>\n<h1>")
+				.append(title(page)).append("</h1>\n");
+		for (String paragraph : paragraphs(page))
+			sb.append("<p>").append(paragraph).append("</p>\n");
+		sb.append("</body>\n</html>\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the configuration file and the pages to a directory.
+	 * 
+	 * @return the configuration file.
+	 */
+	public File write(File dir) throws IOException {
+		dir.mkdirs();
+		File config = new File(dir, "minihelp-config.xml");
+		Files.write(config.toPath(), getConfigurationXml().getBytes(StandardCharsets.UTF_8));
+		for (int i = 0; i < pages; i++)
+			Files.write(new File(dir, getTarget(i) + ".html").toPath(), getPage(i).getBytes(StandardCharsets.UTF_8));
+		return config;
+	}
+
+	/**
+	 * Returns an index segment of all the pages, as built by
+	 * {@link HelpsetIndexer}.
+	 */
+	MemoryIndexSegment createIndexSegment() {
+		MemoryIndexSegment segment = new MemoryIndexSegment();
+		for (int i = 0; i < pages; i++) {
+			String text = getText(i);
+			segment.addDocument(getTarget(i), FullTextIndex.tokenize(text), text);
+		}
+		return segment;
+	}
+
+	public static List<SyntheticHelpset> createHelpsets(int count, int pages, int tocDepth, int indexTerms) {
+		List<SyntheticHelpset> helpsets = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			SyntheticHelpset hs = new SyntheticHelpset(pages, tocDepth, indexTerms);
+			hs.setSeed(i + 1);
+			hs.setTargetPrefix("h" + i + "-");
+			helpsets.add(hs);
+		}
+		return helpsets;
+	}
+}